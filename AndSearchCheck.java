@@ -0,0 +1,92 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks andSearch against intersecting the sets of documents of the query keywords
+ * and sorting every document found by summed frequency, then by the order in which it
+ * was first indexed. The random queries are of 1 to 4 keywords, mixing common and rare
+ * ones, so both short and long lists are galloped over. Some documents are removed
+ * and merged again with new frequencies on the way, so the document-ordered views of
+ * the changed lists must be rebuilt. Runs on the synthetic corpus of
+ * IndexMemoryBenchmark, or on the documents listed in a docs file.
+ *
+ * Usage: java search.AndSearchCheck [docsFile noiseWordsFile]
+ *
+ */
+public class AndSearchCheck {
+
+	private static final int QUERIES = 2000;
+
+	private static final int COMMON_TERMS = 200;
+
+	private static final int[] KS = {1, 5, 10, 1000};
+
+	/**
+	 * Number of queries between changes to the index.
+	 */
+	private static final int QUERIES_PER_CHANGE = 100;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		LittleSearchEngine engine = CheckCorpus.engine(args);
+		ArrayList<String> terms = CheckCorpus.termsByListLength(engine);
+		List<String> common = terms.subList(0, Math.min(COMMON_TERMS, terms.size()));
+		ArrayList<String> docs = CheckCorpus.documents(engine);
+		Random random = new Random(14);
+		for (int q = 0; q < QUERIES; q++) {
+			if (q % QUERIES_PER_CHANGE == QUERIES_PER_CHANGE - 1) {
+				String doc = docs.get(random.nextInt(docs.size()));
+				engine.removeDocument(doc);
+				engine.mergeKeyWords(CheckCorpus.randomKeywords(doc, common, 20, random));
+			}
+			ArrayList<String> query = CheckCorpus.randomQuery(terms, COMMON_TERMS, random);
+			int k = KS[q % KS.length];
+			ArrayList<String> expected = intersection(engine, query, k);
+			ArrayList<String> result = engine.andSearch(query, k);
+			if (expected == null ? result != null : !expected.equals(result)) {
+				throw new IllegalStateException("Result of " + query + " top " + k + " is " + result
+						+ ", not " + expected);
+			}
+		}
+		System.out.printf("%d queries of 1-4 keywords agree with intersecting document sets%n", QUERIES);
+	}
+
+	/**
+	 * Finds the documents that hold every keyword, and returns the k best in the order
+	 * of andSearch, or null if there are none.
+	 */
+	private static ArrayList<String> intersection(final LittleSearchEngine engine, List<String> keywords,
+			int k) {
+		final HashMap<String,Integer> scores = new HashMap<String,Integer>();
+		boolean first = true;
+		for (String keyword : new HashSet<String>(keywords)) {
+			ArrayList<Occurrence> occs = engine.keywordsIndex.get(keyword);
+			if (occs == null) {
+				return null;
+			}
+			HashMap<String,Integer> next = new HashMap<String,Integer>();
+			for (Occurrence occ : occs) {
+				Integer score = scores.get(occ.document);
+				if (first || score != null) {
+					next.put(occ.document, (score == null ? 0 : score) + occ.frequency);
+				}
+			}
+			scores.clear();
+			scores.putAll(next);
+			first = false;
+		}
+		if (scores.isEmpty()) {
+			return null;
+		}
+		ArrayList<String> result = new ArrayList<String>(scores.keySet());
+		Collections.sort(result, new Comparator<String>() {
+			public int compare(String d1, String d2) {
+				int c = Integer.compare(scores.get(d2), scores.get(d1));
+				return c != 0 ? c : Integer.compare(engine.documents.id(d1), engine.documents.id(d2));
+			}
+		});
+		return new ArrayList<String>(result.subList(0, Math.min(k, result.size())));
+	}
+}
@@ -0,0 +1,282 @@
+package search;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Corpora, random queries and index comparisons shared by the check programs. A check
+ * runs on the synthetic corpus of IndexMemoryBenchmark, or on the documents listed in
+ * a docs file; checks that must scan document files write a synthetic text corpus to
+ * a temporary directory instead.
+ *
+ */
+class CheckCorpus {
+
+	/**
+	 * Number of distinct words of a written corpus.
+	 */
+	private static final int VOCABULARY_SIZE = 3000;
+
+	/**
+	 * Number of words in a written document.
+	 */
+	private static final int WORDS_PER_DOC = 300;
+
+	/**
+	 * Number of noise words of a written corpus, taken from its most used words.
+	 */
+	private static final int NOISE_WORDS = 20;
+
+	private static final String PUNCTUATION = ".,?:;!";
+
+	private static final String[] VOCABULARY = vocabulary(new Random(VOCABULARY_SIZE));
+
+	/**
+	 * Makes the engine of a check: indexes the documents listed in args[0], with the
+	 * noise words of args[1], or builds the synthetic corpus of IndexMemoryBenchmark if
+	 * there are not two arguments.
+	 *
+	 * @param args Arguments of the check
+	 * @return Indexed engine
+	 * @throws FileNotFoundException If a file named by the arguments is not found
+	 */
+	static LittleSearchEngine engine(String[] args)
+	throws FileNotFoundException {
+		if (args.length > 1) {
+			LittleSearchEngine engine = new LittleSearchEngine();
+			engine.makeIndex(args[0], args[1]);
+			return engine;
+		}
+		return IndexMemoryBenchmark.syntheticCorpus();
+	}
+
+	/**
+	 * Returns the keywords of an engine, those that occur in the most documents first.
+	 */
+	static ArrayList<String> termsByListLength(final LittleSearchEngine engine) {
+		ArrayList<String> terms = new ArrayList<String>(engine.keywordsIndex.keySet());
+		Collections.sort(terms, new Comparator<String>() {
+			public int compare(String t1, String t2) {
+				return Integer.compare(engine.keywordsIndex.get(t2).size(),
+						engine.keywordsIndex.get(t1).size());
+			}
+		});
+		return terms;
+	}
+
+	/**
+	 * Returns the names of the documents of an engine, in sorted order.
+	 */
+	static ArrayList<String> documents(LittleSearchEngine engine) {
+		ArrayList<String> docs = new ArrayList<String>();
+		for (int id = 0; id < engine.documents.maxId(); id++) {
+			String name = engine.documents.name(id);
+			if (name != null) {
+				docs.add(name);
+			}
+		}
+		Collections.sort(docs);
+		return docs;
+	}
+
+	/**
+	 * Makes a random query of 1 to 4 keywords: one keyword in four is picked from
+	 * anywhere, and the rest from the most common ones.
+	 *
+	 * @param terms Keywords, most common first, as by termsByListLength
+	 * @param common Number of keywords counted as common
+	 * @param random Source of randomness
+	 * @return Query keywords, which may repeat
+	 */
+	static ArrayList<String> randomQuery(List<String> terms, int common, Random random) {
+		ArrayList<String> query = new ArrayList<String>();
+		for (int n = 1 + random.nextInt(4); n > 0; n--) {
+			int range = random.nextInt(4) == 0 ? terms.size() : Math.min(common, terms.size());
+			query.add(terms.get(random.nextInt(range)));
+		}
+		return query;
+	}
+
+	/**
+	 * Makes the keywords of a document, with random frequencies of up to n of the given
+	 * terms, as loadKeyWords would return them.
+	 */
+	static HashMap<String,Occurrence> randomKeywords(String doc, List<String> terms, int n, Random random) {
+		HashMap<String,Occurrence> kws = new HashMap<String,Occurrence>();
+		for (int i = 0; i < n; i++) {
+			kws.put(terms.get(random.nextInt(terms.size())), new Occurrence(doc, 1 + random.nextInt(40)));
+		}
+		return kws;
+	}
+
+	/**
+	 * Checks the result of a top-k search whose ties may come in any order: it must hold
+	 * distinct documents whose scores are the k best scores, in order, or be null if no
+	 * document scores.
+	 *
+	 * @param query Query, for the message
+	 * @param k Number of documents asked for
+	 * @param scores Score of every document that holds any keyword of the query
+	 * @param result Result of the search
+	 * @throws IllegalStateException If the result is not the k best documents
+	 */
+	static void checkBest(List<String> query, int k, HashMap<String,Integer> scores, ArrayList<String> result) {
+		if (scores.isEmpty()) {
+			if (result != null) {
+				throw new IllegalStateException("Expected no result for " + query + ", got " + result);
+			}
+			return;
+		}
+		Integer[] best = scores.values().toArray(new Integer[scores.size()]);
+		Arrays.sort(best, Collections.reverseOrder());
+		if (result == null || result.size() != Math.min(k, best.length)
+				|| new HashSet<String>(result).size() != result.size()) {
+			throw new IllegalStateException("Wrong documents for " + query + " top " + k + ": " + result);
+		}
+		for (int i = 0; i < result.size(); i++) {
+			Integer score = scores.get(result.get(i));
+			if (score == null || score.intValue() != best[i].intValue()) {
+				throw new IllegalStateException("Result " + i + " of " + query + " top " + k + " is "
+						+ result.get(i) + " with score " + score + ", expected score " + best[i]);
+			}
+		}
+	}
+
+	/**
+	 * Checks that two indexes have the same keywords, and that each keyword has the
+	 * same frequency in the same documents, in descending order of frequency.
+	 *
+	 * @param what What is compared, for the message
+	 * @param expected Expected index
+	 * @param actual Index checked
+	 * @param sameOrder True if occurrences of the same frequency must also be in the same
+	 *        order, false if they may come in any order
+	 * @throws IllegalStateException If the indexes differ
+	 */
+	static void checkSameIndex(String what, Map<String,ArrayList<Occurrence>> expected,
+			Map<String,ArrayList<Occurrence>> actual, boolean sameOrder) {
+		if (!expected.keySet().equals(actual.keySet())) {
+			HashSet<String> missing = new HashSet<String>(expected.keySet());
+			missing.removeAll(actual.keySet());
+			HashSet<String> extra = new HashSet<String>(actual.keySet());
+			extra.removeAll(expected.keySet());
+			throw new IllegalStateException(what + ": keywords " + missing + " are missing, and "
+					+ extra + " should not be there");
+		}
+		for (Map.Entry<String,ArrayList<Occurrence>> e : expected.entrySet()) {
+			ArrayList<Occurrence> occs = actual.get(e.getKey());
+			if (!sameList(e.getValue(), occs, sameOrder)) {
+				throw new IllegalStateException(what + ": list of " + e.getKey() + " is " + occs
+						+ ", not " + e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Compares two occurrence lists, as checkSameIndex does.
+	 */
+	private static boolean sameList(ArrayList<Occurrence> expected, ArrayList<Occurrence> occs,
+			boolean sameOrder) {
+		if (occs.size() != expected.size()) {
+			return false;
+		}
+		HashMap<String,Integer> frequencies = new HashMap<String,Integer>();
+		for (Occurrence occ : expected) {
+			frequencies.put(occ.document, occ.frequency);
+		}
+		for (int i = 0; i < occs.size(); i++) {
+			Occurrence occ = occs.get(i);
+			Integer frequency = frequencies.remove(occ.document);
+			if (frequency == null || frequency != occ.frequency
+					|| (i > 0 && occs.get(i - 1).frequency < occ.frequency)
+					|| (sameOrder && !occ.document.equals(expected.get(i).document))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a synthetic text corpus to a directory: document files of words over a
+	 * random vocabulary, most of them lower case, some capitalized or followed by
+	 * punctuation, a noise words file named noisewords.txt holding the most used words,
+	 * and a docs file named docs.txt listing the documents.
+	 *
+	 * @param dir Directory to write to
+	 * @param docs Number of documents
+	 * @param random Source of randomness
+	 * @return Names of the document files, in the order of the docs file
+	 * @throws IOException If a file could not be written
+	 */
+	static ArrayList<String> writeCorpus(Path dir, int docs, Random random)
+	throws IOException {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int d = 0; d < docs; d++) {
+			Path file = dir.resolve("doc" + d + ".txt");
+			writeDocument(file, random);
+			names.add(file.toString());
+		}
+		Files.write(dir.resolve("docs.txt"), names, StandardCharsets.UTF_8);
+		Files.write(dir.resolve("noisewords.txt"), Arrays.asList(VOCABULARY).subList(0, NOISE_WORDS),
+				StandardCharsets.UTF_8);
+		return names;
+	}
+
+	/**
+	 * Writes one document of a synthetic text corpus, replacing the file if it exists.
+	 *
+	 * @param file Document file
+	 * @param random Source of randomness
+	 * @throws IOException If the file could not be written
+	 */
+	static void writeDocument(Path file, Random random)
+	throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int w = 0; w < WORDS_PER_DOC; w++) {
+			// squaring skews use towards the first words
+			double r = random.nextDouble();
+			String word = VOCABULARY[(int)(r * r * VOCABULARY.length)];
+			if (random.nextInt(10) == 0) {
+				word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+			}
+			if (random.nextInt(8) == 0) {
+				word += PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length()));
+			}
+			sb.append(word).append(w % 12 == 11 ? '\n' : ' ');
+		}
+		Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Makes the distinct words of a written corpus, of 3 to 9 lower case letters.
+	 */
+	private static String[] vocabulary(Random random) {
+		LinkedHashSet<String> words = new LinkedHashSet<String>();
+		while (words.size() < VOCABULARY_SIZE) {
+			char[] chars = new char[3 + random.nextInt(7)];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = (char)('a' + random.nextInt(26));
+			}
+			words.add(new String(chars));
+		}
+		return words.toArray(new String[0]);
+	}
+
+	/**
+	 * Deletes a directory and the files in it.
+	 */
+	static void delete(Path dir)
+	throws IOException {
+		DirectoryStream<Path> files = Files.newDirectoryStream(dir);
+		try {
+			for (Path file : files) {
+				Files.delete(file);
+			}
+		} finally {
+			files.close();
+		}
+		Files.delete(dir);
+	}
+}
@@ -0,0 +1,172 @@
+package search;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * This class is a read-only copy of the keyword index of a LittleSearchEngine, in which
+ * keywords and documents are replaced by integer ids. Keywords are numbered by a term
+ * dictionary, and documents by a document table, so postings hold only ints. The
+ * postings of each term are stored in the format of the PostingsCodec the index is
+ * built with, either as parallel document id and frequency arrays or compressed, and
+ * are read in descending order of frequency, ties in ascending order of document id.
+ * Document names are only looked up for search results.
+ *
+ * An index can be saved to a segment file, and opened again by memory-mapping the file,
+ * without scanning any document.
+ *
+ */
+public class CompactIndex {
+
+	/**
+	 * Term ids of all keywords.
+	 */
+	final TermDictionary terms;
+
+	/**
+	 * Ids of all documents.
+	 */
+	final DocumentTable documents;
+
+	/**
+	 * Postings of each keyword, indexed by term id.
+	 */
+	final Postings[] postings;
+
+	/**
+	 * Noise words of the engine the index was made from.
+	 */
+	final String[] noiseWords;
+
+	/**
+	 * Postings of keywords that are not in the index.
+	 */
+	private static final PostingsList EMPTY = new PostingsList(0);
+
+	/**
+	 * Initializes an index over the given terms, documents and postings.
+	 *
+	 * @param terms Term dictionary
+	 * @param documents Document table
+	 * @param postings Postings of each term, indexed by term id
+	 * @param noiseWords Noise words of the engine the index was made from
+	 */
+	CompactIndex(TermDictionary terms, DocumentTable documents, Postings[] postings, 
+			String[] noiseWords) {
+		this.terms = terms;
+		this.documents = documents;
+		this.postings = postings;
+		this.noiseWords = noiseWords;
+	}
+
+	/**
+	 * Opens an index saved in a segment file. The file is memory-mapped, and postings
+	 * are decoded from the mapping when they are searched, so opening a segment only
+	 * reads its noise words, document names and keywords. This is the fast way to 
+	 * restart from a saved index; LittleSearchEngine.loadIndex rebuilds every posting.
+	 *
+	 * @param path Segment file
+	 * @return Index in the segment file
+	 * @throws IOException If the file could not be read, or is not a segment file
+	 */
+	public static CompactIndex load(Path path)
+	throws IOException {
+		return IndexSegment.open(path);
+	}
+
+	/**
+	 * Saves this index to a segment file, replacing the file atomically if it exists.
+	 * Postings are written compressed with the VBYTE codec, whichever codec this index
+	 * was built with.
+	 *
+	 * @param path Segment file
+	 * @throws IOException If the file could not be written
+	 */
+	public void save(Path path)
+	throws IOException {
+		IndexSegment.write(this, path);
+	}
+
+	/**
+	 * Number of keywords in the index.
+	 *
+	 * @return Number of keywords
+	 */
+	public int size() {
+		return terms.size();
+	}
+
+	/**
+	 * Number of bytes taken by the postings data of all keywords.
+	 *
+	 * @return Size of all postings data in bytes
+	 */
+	public long postingsSizeInBytes() {
+		long bytes = 0;
+		for (Postings p : postings) {
+			bytes += p.sizeInBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Search result for "kw1 or kw2", with the same rules as LittleSearchEngine.top5search.
+	 * A document is in the result if kw1 or kw2 occurs in it. The result is in descending
+	 * order of occurrence frequencies, with ties broken in favor of kw1, and a document
+	 * appears only once. The result is limited to 5 entries.
+	 *
+	 * @param kw1 First keyword
+	 * @param kw2 Second keyword
+	 * @return List of NAMES of documents in which either kw1 or kw2 occurs, or null if there
+	 *         are no matching documents
+	 */
+	public ArrayList<String> top5search(String kw1, String kw2) {
+		PostingsCursor c1 = cursor(kw1.toLowerCase());
+		PostingsCursor c2 = cursor(kw2.toLowerCase());
+		boolean more1 = c1.next(), more2 = c2.next();
+		int[] found = new int[5];
+		int n = 0;
+		while (n < found.length && (more1 || more2)) {
+			int doc;
+			if (!more2 || (more1 && c1.frequency() >= c2.frequency())) {
+				doc = c1.doc();
+				more1 = c1.next();
+			} else {
+				doc = c2.doc();
+				more2 = c2.next();
+			}
+			if (!contains(found, n, doc)) {
+				found[n++] = doc;
+			}
+		}
+		if (n == 0) {
+			return null;
+		}
+		ArrayList<String> result = new ArrayList<String>(n);
+		for (int k = 0; k < n; k++) {
+			result.add(documents.name(found[k]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a cursor over the postings of a keyword.
+	 *
+	 * @param keyword Keyword, in lower case
+	 * @return Postings cursor, with no postings if the keyword is not in the index
+	 */
+	PostingsCursor cursor(String keyword) {
+		int id = terms.id(keyword);
+		return id < 0 ? EMPTY.cursor() : postings[id].cursor();
+	}
+
+	private static boolean contains(int[] docs, int n, int doc) {
+		for (int k = 0; k < n; k++) {
+			if (docs[k] == doc) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
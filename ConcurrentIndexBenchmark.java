@@ -0,0 +1,134 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Measures how merging documents into a ConcurrentKeywordIndex scales from 1 to N
+ * threads, against merging them one at a time with LittleSearchEngine.mergeKeyWords.
+ * The documents are those of the synthetic corpus of IndexMemoryBenchmark, or those
+ * listed in a docs file, scanned before timing starts. After every run, each occurrence
+ * list is checked to be in descending order of frequency, with every occurrence in it.
+ * Last, the time taken to hand a filled concurrent index over to an empty engine is
+ * measured.
+ *
+ * Usage: java search.ConcurrentIndexBenchmark [maxThreads [docsFile noiseWordsFile]]
+ *
+ */
+public class ConcurrentIndexBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+				: Math.max(8, Runtime.getRuntime().availableProcessors());
+		LittleSearchEngine engine;
+		if (args.length > 2) {
+			engine = new LittleSearchEngine();
+			engine.makeIndex(args[1], args[2]);
+		} else {
+			engine = IndexMemoryBenchmark.syntheticCorpus();
+		}
+		engine.setForwardIndex(true);
+		final ArrayList<HashMap<String,Occurrence>> docs =
+				new ArrayList<HashMap<String,Occurrence>>(engine.documentKeywords.values());
+		long postings = 0;
+		for (HashMap<String,Occurrence> kws : docs) {
+			postings += kws.size();
+		}
+		engine = null;
+
+		System.out.printf("%d documents, %d postings, %d processors%n", docs.size(), postings,
+				Runtime.getRuntime().availableProcessors());
+		double serial = Double.MAX_VALUE;
+		for (int r = 0; r < ROUNDS; r++) {
+			LittleSearchEngine e = new LittleSearchEngine();
+			long start = System.nanoTime();
+			for (HashMap<String,Occurrence> kws : docs) {
+				e.mergeKeyWords(kws);
+			}
+			serial = Math.min(serial, (System.nanoTime() - start) / 1e6);
+		}
+		System.out.printf("%-24s %10.1f ms %12.0f docs/s%n", "engine, 1 thread", serial,
+				docs.size() / serial * 1000);
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			double best = Double.MAX_VALUE;
+			for (int r = 0; r < ROUNDS; r++) {
+				final ConcurrentKeywordIndex index = new ConcurrentKeywordIndex();
+				final AtomicInteger next = new AtomicInteger();
+				Thread[] workers = new Thread[threads];
+				for (int t = 0; t < threads; t++) {
+					workers[t] = new Thread() {
+						public void run() {
+							int d;
+							while ((d = next.getAndIncrement()) < docs.size()) {
+								index.mergeKeyWords(docs.get(d));
+							}
+						}
+					};
+				}
+				long start = System.nanoTime();
+				for (Thread worker : workers) {
+					worker.start();
+				}
+				for (Thread worker : workers) {
+					join(worker);
+				}
+				best = Math.min(best, (System.nanoTime() - start) / 1e6);
+				check(index, docs, postings);
+			}
+			System.out.printf("%-24s %10.1f ms %12.0f docs/s%n", "striped, " + threads + " threads",
+					best, docs.size() / best * 1000);
+		}
+
+		double handOver = Double.MAX_VALUE;
+		for (int r = 0; r < ROUNDS; r++) {
+			ConcurrentKeywordIndex index = new ConcurrentKeywordIndex();
+			for (HashMap<String,Occurrence> kws : docs) {
+				index.mergeKeyWords(kws);
+			}
+			LittleSearchEngine e = new LittleSearchEngine();
+			long start = System.nanoTime();
+			e.mergeKeyWords(index);
+			handOver = Math.min(handOver, (System.nanoTime() - start) / 1e6);
+		}
+		System.out.printf("%-24s %10.1f ms%n", "hand over to engine", handOver);
+	}
+
+	private static void join(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Checks that every list of the index is in descending order of frequency, and that
+	 * the lists hold all the postings of the documents.
+	 */
+	private static void check(ConcurrentKeywordIndex index, ArrayList<HashMap<String,Occurrence>> docs,
+			long postings) {
+		HashSet<String> keywords = new HashSet<String>();
+		for (HashMap<String,Occurrence> kws : docs) {
+			keywords.addAll(kws.keySet());
+		}
+		long found = 0;
+		for (String keyword : keywords) {
+			ArrayList<Occurrence> occs = index.occurrences(keyword);
+			for (int i = 1; i < occs.size(); i++) {
+				if (occs.get(i).frequency > occs.get(i - 1).frequency) {
+					throw new IllegalStateException("List of " + keyword + " is out of order");
+				}
+			}
+			found += occs.size();
+		}
+		if (found != postings || index.documentCount() != docs.size()) {
+			throw new IllegalStateException("Found " + found + " of " + postings + " postings");
+		}
+	}
+}
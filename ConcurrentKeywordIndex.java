@@ -0,0 +1,240 @@
+package search;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class is a keyword index that many threads can merge documents into at once, for
+ * streaming ingestion. The keywords are split into stripes by hash, each stripe being
+ * a hash table of occurrence lists guarded by its own lock, so threads merging documents
+ * only wait for each other when they update keywords of the same stripe at the same
+ * time. A document's keywords are grouped by stripe first, so each stripe is locked
+ * once per document. Each occurrence is inserted in its place as it is merged, so every
+ * list is always in descending order of frequency, with ties in the order in which
+ * they were merged.
+ *
+ * The index can be searched while it is being filled; a search reads only as much of
+ * each list as it needs, under the list's lock. Once ingestion is done, the index can be
+ * handed over to a LittleSearchEngine with its mergeKeyWords, which adopts the lists
+ * as they are.
+ *
+ */
+public class ConcurrentKeywordIndex {
+
+	/**
+	 * Number of stripes used by the default constructor.
+	 */
+	public static final int DEFAULT_STRIPES = 64;
+
+	/**
+	 * A hash table of occurrence lists, locked by synchronizing on it.
+	 */
+	private static final class Stripe {
+		final HashMap<String,ArrayList<Occurrence>> index = new HashMap<String,ArrayList<Occurrence>>();
+	}
+
+	/**
+	 * Stripes, a power of 2 of them.
+	 */
+	private final Stripe[] stripes;
+
+	/**
+	 * The keywords of each merged document, keyed by document name.
+	 */
+	private final ConcurrentHashMap<String,HashMap<String,Occurrence>> documentKeywords;
+
+	/**
+	 * The keywords of merged documents, in the order in which they were merged.
+	 */
+	private final ConcurrentLinkedQueue<HashMap<String,Occurrence>> documents;
+
+	/**
+	 * Initializes an empty index with DEFAULT_STRIPES stripes.
+	 */
+	public ConcurrentKeywordIndex() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Initializes an empty index with the given number of stripes, rounded up to a power of 2.
+	 * More stripes let more threads merge at once, at the cost of more, smaller tables.
+	 *
+	 * @param stripes Number of stripes
+	 * @throws IllegalArgumentException If stripes is not positive
+	 */
+	public ConcurrentKeywordIndex(int stripes) {
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("stripes must be positive: " + stripes);
+		}
+		int n = 1;
+		while (n < stripes) {
+			n *= 2;
+		}
+		this.stripes = new Stripe[n];
+		for (int i = 0; i < n; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		documentKeywords = new ConcurrentHashMap<String,HashMap<String,Occurrence>>();
+		documents = new ConcurrentLinkedQueue<HashMap<String,Occurrence>>();
+	}
+
+	/**
+	 * Merges the keywords for a single document into the index, as
+	 * LittleSearchEngine.mergeKeyWords does. Any number of threads may call this at once,
+	 * for different documents. A document can only be merged once.
+	 *
+	 * @param kws Keywords hash table for a document, as made by LittleSearchEngine.loadKeyWords
+	 * @throws IllegalArgumentException If the document has already been merged
+	 */
+	public void mergeKeyWords(HashMap<String,Occurrence> kws) {
+		if (kws.isEmpty()) {
+			return;
+		}
+		String docFile = kws.values().iterator().next().document;
+		if (documentKeywords.putIfAbsent(docFile, kws) != null) {
+			throw new IllegalArgumentException(docFile + " has already been merged");
+		}
+		documents.add(kws);
+
+		// group the keywords by stripe, so that each stripe is locked once
+		int mask = stripes.length - 1;
+		int[] counts = new int[stripes.length + 1];
+		for (String keyword : kws.keySet()) {
+			counts[stripe(keyword, mask) + 1]++;
+		}
+		for (int i = 0; i < stripes.length; i++) {
+			counts[i + 1] += counts[i];
+		}
+		String[] keywords = new String[kws.size()];
+		Occurrence[] occurrences = new Occurrence[kws.size()];
+		int[] next = Arrays.copyOf(counts, stripes.length);
+		for (Map.Entry<String,Occurrence> e : kws.entrySet()) {
+			int i = next[stripe(e.getKey(), mask)]++;
+			keywords[i] = e.getKey();
+			occurrences[i] = e.getValue();
+		}
+
+		for (int s = 0; s < stripes.length; s++) {
+			if (counts[s] == counts[s + 1]) {
+				continue;
+			}
+			HashMap<String,ArrayList<Occurrence>> index = stripes[s].index;
+			synchronized (index) {
+				for (int i = counts[s]; i < counts[s + 1]; i++) {
+					ArrayList<Occurrence> occs = index.get(keywords[i]);
+					if (occs == null) {
+						occs = new ArrayList<Occurrence>(2);
+						index.put(keywords[i], occs);
+					}
+					occs.add(occurrences[i]);
+					LittleSearchEngine.insertLastOccurrence(occs, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a copy of the occurrence list of a keyword, in descending order of frequency.
+	 *
+	 * @param keyword Keyword, in lower case
+	 * @return Occurrences of the keyword, or null if it is not in the index
+	 */
+	public ArrayList<Occurrence> occurrences(String keyword) {
+		return occurrences(keyword, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns a copy of the first occurrences of a keyword, in descending order of
+	 * frequency. Only those occurrences are read under the list's lock, so the time it
+	 * is held does not depend on the length of the list.
+	 *
+	 * @param keyword Keyword, in lower case
+	 * @param max Largest number of occurrences to copy
+	 * @return First occurrences of the keyword, or null if it is not in the index
+	 */
+	public ArrayList<Occurrence> occurrences(String keyword, int max) {
+		HashMap<String,ArrayList<Occurrence>> index = stripes[stripe(keyword, stripes.length - 1)].index;
+		synchronized (index) {
+			ArrayList<Occurrence> occs = index.get(keyword);
+			return occs == null ? null : new ArrayList<Occurrence>(occs.subList(0, Math.min(max, occs.size())));
+		}
+	}
+
+	/**
+	 * Search result for "kw1 or kw2", as LittleSearchEngine.top5search gives it. Each
+	 * list holds a document at most once, so the merge takes at most 5 occurrences from
+	 * each list before it has 5 distinct documents, and only those are copied. Each
+	 * keyword's occurrences are copied at one moment, but the two keywords' may be copied
+	 * before and after a document is merged.
+	 *
+	 * @param kw1 First keyword
+	 * @param kw2 Second keyword
+	 * @return List of NAMES of documents in which either kw1 or kw2 occurs, arranged in descending order of
+	 *         frequencies. The result size is limited to 5 documents. If there are no matching documents,
+	 *         the result is null.
+	 */
+	public ArrayList<String> top5search(String kw1, String kw2) {
+		return LittleSearchEngine.top5merge(occurrences(kw1.toLowerCase(), 5),
+				occurrences(kw2.toLowerCase(), 5));
+	}
+
+	/**
+	 * Number of keywords in the index.
+	 *
+	 * @return Number of keywords
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe.index) {
+				size += stripe.index.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Number of documents merged into the index.
+	 *
+	 * @return Number of documents
+	 */
+	public int documentCount() {
+		return documentKeywords.size();
+	}
+
+	/**
+	 * The keywords of the documents merged so far, in the order in which they were merged.
+	 *
+	 * @return Keywords hash tables of documents
+	 */
+	Iterable<HashMap<String,Occurrence>> documents() {
+		return documents;
+	}
+
+	/**
+	 * Empties the index, and returns its occurrence lists, which are then the caller's.
+	 * No thread may be merging into the index.
+	 *
+	 * @return Occurrence lists, keyed by keyword, each in descending order of frequency
+	 */
+	HashMap<String,ArrayList<Occurrence>> handOver() {
+		HashMap<String,ArrayList<Occurrence>> lists = new HashMap<String,ArrayList<Occurrence>>();
+		for (Stripe stripe : stripes) {
+			synchronized (stripe.index) {
+				lists.putAll(stripe.index);
+				stripe.index.clear();
+			}
+		}
+		documentKeywords.clear();
+		documents.clear();
+		return lists;
+	}
+
+	private static int stripe(String keyword, int mask) {
+		int h = keyword.hashCode();
+		// spread differently from the stripe's own table, so one stripe's keywords still
+		// fill its table evenly
+		h *= 0x9e3779b9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
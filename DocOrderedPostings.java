@@ -0,0 +1,150 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class is a view of the occurrence list of a keyword in ascending order of
+ * document id, held in parallel arrays. Occurrence lists are kept in descending order
+ * of frequency, which suits ranking by frequency; queries that need to line up the
+ * documents of several keywords, such as AND queries, use this view instead. The view
+ * also records the highest frequency in the list and in each block of postings, which
+ * bound the score a document can get from the keyword, and it finds the Occurrence of
+ * a given document by binary search.
+ *
+ */
+class DocOrderedPostings {
+
+	/**
+	 * Document ids, in ascending order.
+	 */
+	final int[] docs;
+
+	/**
+	 * Frequency of the keyword in the document with the same index in docs.
+	 */
+	final int[] freqs;
+
+	/**
+	 * Number of postings in a block, for block maximum frequencies.
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	/**
+	 * Highest frequency in each block of BLOCK_SIZE postings.
+	 */
+	final int[] blockMax;
+
+	/**
+	 * Highest frequency in the list.
+	 */
+	final int maxFreq;
+
+	/**
+	 * The Occurrence of the posting with the same index in docs.
+	 */
+	final Occurrence[] occurrences;
+
+	/**
+	 * Occurrence list the view was made from.
+	 */
+	final ArrayList<Occurrence> list;
+
+	/**
+	 * Makes the document-ordered view of an occurrence list.
+	 *
+	 * @param occs Occurrence list of a keyword
+	 * @param documents Ids of the documents in the list
+	 */
+	DocOrderedPostings(ArrayList<Occurrence> occs, DocumentTable documents) {
+		list = occs;
+		int n = occs.size();
+		// each document is in the list once, so sorting by id and then list index 
+		// sorts by id
+		long[] pairs = new long[n];
+		for (int i = 0; i < n; i++) {
+			pairs[i] = ((long)documents.id(occs.get(i).document) << 32) | i;
+		}
+		Arrays.sort(pairs);
+		docs = new int[n];
+		freqs = new int[n];
+		occurrences = new Occurrence[n];
+		blockMax = new int[(n + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		int max = 0;
+		for (int i = 0; i < n; i++) {
+			docs[i] = (int)(pairs[i] >>> 32);
+			occurrences[i] = occs.get((int)pairs[i]);
+			freqs[i] = occurrences[i].frequency;
+			blockMax[i / BLOCK_SIZE] = Math.max(blockMax[i / BLOCK_SIZE], freqs[i]);
+			max = Math.max(max, freqs[i]);
+		}
+		maxFreq = max;
+	}
+
+	/**
+	 * Finds the Occurrence of a document, by binary search.
+	 *
+	 * @param doc Document id
+	 * @return Occurrence of the keyword in the document, or null if it is not in the list
+	 */
+	Occurrence occurrence(int doc) {
+		int i = advance(0, doc);
+		return i < docs.length && docs[i] == doc ? occurrences[i] : null;
+	}
+
+	/**
+	 * Number of postings.
+	 *
+	 * @return Number of postings
+	 */
+	int size() {
+		return docs.length;
+	}
+
+	/**
+	 * Document id of the last posting in the block that holds a posting.
+	 *
+	 * @param i Index of a posting
+	 * @return Last document id of its block
+	 */
+	int blockLastDoc(int i) {
+		return docs[Math.min((i / BLOCK_SIZE + 1) * BLOCK_SIZE, docs.length) - 1];
+	}
+
+	/**
+	 * Finds the first posting at or after a given index whose document id is at least
+	 * the target, by galloping: the distance from the start is doubled until a posting
+	 * at or past the target is found, and that last step is then binary searched. The
+	 * cost is logarithmic in the distance skipped, not in the length of the list.
+	 *
+	 * @param from Index to start from
+	 * @param target Document id to look for
+	 * @return Index of the first posting from index from with a document id of at least
+	 *         target, or size() if there is none
+	 */
+	int advance(int from, int target) {
+		int n = docs.length;
+		if (from >= n || docs[from] >= target) {
+			return from;
+		}
+		int lo = from, step = 1;
+		int hi = from + 1;
+		while (hi < n && docs[hi] < target) {
+			lo = hi;
+			step <<= 1;
+			hi = from + step;
+		}
+		if (hi > n) {
+			hi = n;
+		}
+		// docs[lo] < target, and docs[hi] >= target or hi == n
+		while (lo + 1 < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (docs[mid] < target) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		return hi;
+	}
+}
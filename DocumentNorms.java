@@ -0,0 +1,114 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class keeps the length of each document of an index, in keywords, for scoring.
+ * Lengths are stored in one byte per document id, on a logarithmic scale: a stored
+ * length is within 4% of the real one, which is well within what length normalization
+ * needs. The total length of all documents is kept exactly, for the average length.
+ *
+ * Document ids are not reused, so the length of an id never changes once it is set,
+ * and a snapshot of the table can share its array.
+ *
+ */
+class DocumentNorms {
+
+	/**
+	 * Ratio between successive lengths that a byte can hold.
+	 */
+	private static final double LOG_BASE = Math.log(1.08);
+
+	/**
+	 * Length for each byte value.
+	 */
+	private static final float[] LENGTHS = new float[256];
+	static {
+		for (int i = 0; i < LENGTHS.length; i++) {
+			LENGTHS[i] = (float)Math.expm1(i * LOG_BASE);
+		}
+	}
+
+	/**
+	 * Encoded length of each document, indexed by document id.
+	 */
+	private byte[] norms = new byte[64];
+
+	/**
+	 * Sum of the lengths of all documents.
+	 */
+	private long totalLength;
+
+	/**
+	 * Number of documents.
+	 */
+	private int count;
+
+	/**
+	 * Initializes an empty table of lengths.
+	 */
+	DocumentNorms() {
+	}
+
+	/**
+	 * Initializes a read-only snapshot of a table, which shares its array of lengths.
+	 *
+	 * @param other Table to take a snapshot of
+	 */
+	DocumentNorms(DocumentNorms other) {
+		norms = other.norms;
+		totalLength = other.totalLength;
+		count = other.count;
+	}
+
+	/**
+	 * Records the length of a document that is added to the index.
+	 *
+	 * @param id Document id
+	 * @param length Number of keywords in the document
+	 */
+	void add(int id, long length) {
+		if (id >= norms.length) {
+			norms = Arrays.copyOf(norms, Math.max(id + 1, norms.length * 2));
+		}
+		norms[id] = encode(length);
+		totalLength += length;
+		count++;
+	}
+
+	/**
+	 * Forgets the length of a document that is removed from the index.
+	 *
+	 * @param id Document id
+	 * @param length Number of keywords the document had
+	 */
+	void remove(int id, long length) {
+		// the id is retired, and its length may still be read by snapshots
+		totalLength -= length;
+		count--;
+	}
+
+	/**
+	 * Length of a document, as stored.
+	 *
+	 * @param id Document id
+	 * @return Number of keywords in the document, to within 4%
+	 */
+	float length(int id) {
+		return LENGTHS[norms[id] & 0xff];
+	}
+
+	/**
+	 * Average length of the documents.
+	 *
+	 * @return Average number of keywords in a document, or 0 if there are no documents
+	 */
+	float averageLength() {
+		return count == 0 ? 0 : (float)((double)totalLength / count);
+	}
+
+	private static byte encode(long length) {
+		long code = Math.round(Math.log1p(length) / LOG_BASE);
+		return (byte)Math.min(code, 255);
+	}
+}
@@ -0,0 +1,167 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class numbers the documents of an index. Each document name is given an integer
+ * id when it is added, so postings can refer to documents by id, and names are only
+ * looked up when search results are returned. Ids are not reused: when a document is
+ * removed its id is retired, and if it is added again it gets a new id.
+ *
+ * A read-only snapshot of a table shares its array of names, which is only appended to,
+ * and shares the ids of unchanged documents with the snapshot before it, so that taking
+ * one does not copy the table.
+ *
+ */
+class DocumentTable {
+
+	/**
+	 * Document names, indexed by document id, up to maxId. A removed document's name is
+	 * left in place, so that snapshots sharing the array still see it; a name is only
+	 * that of a document in the table if ids gives its index as the id.
+	 */
+	private String[] names;
+
+	/**
+	 * Number of ids given out so far.
+	 */
+	private int maxId;
+
+	/**
+	 * Ids of the documents in the table, keyed by document name. It is a SnapshotMap in
+	 * a snapshot.
+	 */
+	private final Map<String,Integer> ids;
+
+	/**
+	 * Initializes an empty table.
+	 */
+	DocumentTable() {
+		names = new String[16];
+		ids = new HashMap<String,Integer>();
+	}
+
+	/**
+	 * Initializes a table with the same documents and ids as another table.
+	 *
+	 * @param other Table to copy
+	 */
+	DocumentTable(DocumentTable other) {
+		names = Arrays.copyOf(other.names, Math.max(other.maxId, 16));
+		maxId = other.maxId;
+		ids = new HashMap<String,Integer>(other.ids);
+	}
+
+	/**
+	 * Initializes a table with the given documents, each having its index in the array
+	 * as id.
+	 *
+	 * @param names Document names, indexed by id, with null for the ids of removed documents
+	 */
+	DocumentTable(String[] names) {
+		this.names = Arrays.copyOf(names, Math.max(names.length, 16));
+		maxId = names.length;
+		ids = new HashMap<String,Integer>();
+		for (int id = 0; id < names.length; id++) {
+			if (names[id] != null) {
+				ids.put(names[id], id);
+			}
+		}
+	}
+
+	/**
+	 * Initializes a read-only snapshot of a table.
+	 *
+	 * @param table Table to take a snapshot of
+	 * @param previous Previous snapshot of the table, or null to copy all ids
+	 * @param changed Names of the documents added or removed since the previous snapshot
+	 */
+	DocumentTable(DocumentTable table, DocumentTable previous, Collection<String> changed) {
+		names = table.names;
+		maxId = table.maxId;
+		if (previous == null) {
+			ids = new SnapshotMap<String,Integer>(table.ids);
+		} else {
+			HashMap<String,Integer> changes = new HashMap<String,Integer>();
+			for (String name : changed) {
+				changes.put(name, table.ids.get(name));
+			}
+			ids = ((SnapshotMap<String,Integer>)previous.ids).with(changes);
+		}
+	}
+
+	/**
+	 * Adds a document to the table, if it is not in it already.
+	 *
+	 * @param name Document name
+	 * @return Id of the document
+	 */
+	int add(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			if (maxId == names.length) {
+				names = Arrays.copyOf(names, maxId * 2);
+			}
+			id = maxId++;
+			names[id] = name;
+			ids.put(name, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Removes a document from the table.
+	 *
+	 * @param name Document name
+	 * @return Id the document had, or -1 if it was not in the table
+	 */
+	int remove(String name) {
+		Integer id = ids.remove(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the id of a document.
+	 *
+	 * @param name Document name
+	 * @return Id of the document, or -1 if it is not in the table
+	 */
+	int id(String name) {
+		Integer id = ids.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the name of a document.
+	 *
+	 * @param id Document id
+	 * @return Document name, or null if the document has been removed
+	 */
+	String name(int id) {
+		String name = names[id];
+		if (name == null) {
+			return null;
+		}
+		Integer current = ids.get(name);
+		return current != null && current == id ? name : null;
+	}
+
+	/**
+	 * Number of ids given out so far, including those of removed documents. All document
+	 * ids are less than this number.
+	 *
+	 * @return Upper bound of document ids
+	 */
+	int maxId() {
+		return maxId;
+	}
+
+	/**
+	 * Number of documents in the table.
+	 *
+	 * @return Number of documents
+	 */
+	int size() {
+		return ids.size();
+	}
+}
@@ -0,0 +1,154 @@
+package search;
+
+/**
+ * This interface decides which queries a full QueryCache keeps. The cache keeps its
+ * entries in order of last use, and when a new entry does not fit, the least recently
+ * used one is the victim. The policy is told of every lookup, and decides whether the
+ * new entry is admitted in place of the victim, or dropped. Policies are called with
+ * the lock of their cache held, and must not be shared by caches.
+ *
+ */
+public interface EvictionPolicy {
+
+	/**
+	 * Called on every lookup of the cache, whether it hits or misses.
+	 *
+	 * @param key Key looked up
+	 */
+	void recordAccess(Object key);
+
+	/**
+	 * Decides whether a new entry replaces the least recently used entry of a full cache.
+	 *
+	 * @param candidate Key of the new entry
+	 * @param victim Key of the least recently used entry
+	 * @return True to evict the victim and add the candidate, false to drop the candidate
+	 */
+	boolean admit(Object candidate, Object victim);
+
+	/**
+	 * Least recently used: every new entry is admitted, and the least recently used
+	 * entry is evicted.
+	 */
+	public static class Lru implements EvictionPolicy {
+
+		public void recordAccess(Object key) {
+		}
+
+		public boolean admit(Object candidate, Object victim) {
+			return true;
+		}
+
+		public String toString() {
+			return "LRU";
+		}
+	}
+
+	/**
+	 * TinyLFU admission in front of LRU eviction: a new entry is admitted only if its key
+	 * has been looked up more often than the victim's, recently. Lookups are counted in a
+	 * count-min sketch of 4-bit counters, 4 per key, so keys that are not in the cache
+	 * are counted too, in a fixed amount of memory. Once the number of lookups counted
+	 * reaches ten times the number of counters in a row, all counters are halved, so old
+	 * popularity fades. One-off queries then cannot push popular ones out of the cache.
+	 */
+	public static class TinyLfu implements EvictionPolicy {
+
+		/**
+		 * Rows of the sketch, one after the other.
+		 */
+		private static final int ROWS = 4;
+
+		/**
+		 * Largest value of a counter.
+		 */
+		private static final int MAX_COUNT = 15;
+
+		/**
+		 * Counters of the sketch, ROWS rows of width counters each.
+		 */
+		private final byte[] counters;
+
+		/**
+		 * Number of counters in a row, a power of 2.
+		 */
+		private final int width;
+
+		/**
+		 * Number of lookups counted since the counters were last halved.
+		 */
+		private int additions;
+
+		/**
+		 * Number of lookups after which the counters are halved.
+		 */
+		private final int sampleSize;
+
+		/**
+		 * Initializes the policy for a cache of the given capacity.
+		 *
+		 * @param capacity Largest number of entries of the cache
+		 */
+		public TinyLfu(int capacity) {
+			int w = 16;
+			while (w < capacity) {
+				w *= 2;
+			}
+			width = w;
+			counters = new byte[ROWS * width];
+			sampleSize = 10 * width;
+		}
+
+		public void recordAccess(Object key) {
+			int hash = spread(key.hashCode());
+			boolean added = false;
+			for (int row = 0; row < ROWS; row++) {
+				int i = index(hash, row);
+				if (counters[i] < MAX_COUNT) {
+					counters[i]++;
+					added = true;
+				}
+			}
+			if (added && ++additions == sampleSize) {
+				for (int i = 0; i < counters.length; i++) {
+					counters[i] >>= 1;
+				}
+				additions /= 2;
+			}
+		}
+
+		public boolean admit(Object candidate, Object victim) {
+			return frequency(candidate) > frequency(victim);
+		}
+
+		/**
+		 * Estimated number of recent lookups of a key, the smallest of its counters.
+		 *
+		 * @param key Key
+		 * @return Estimated frequency, from 0 to 15
+		 */
+		int frequency(Object key) {
+			int hash = spread(key.hashCode());
+			int min = MAX_COUNT;
+			for (int row = 0; row < ROWS; row++) {
+				min = Math.min(min, counters[index(hash, row)]);
+			}
+			return min;
+		}
+
+		private int index(int hash, int row) {
+			int h = hash * (0x9e3779b9 + 2 * row);
+			return row * width + ((h ^ (h >>> 16)) & (width - 1));
+		}
+
+		private static int spread(int h) {
+			h ^= h >>> 16;
+			h *= 0x85ebca6b;
+			return h ^ (h >>> 13);
+		}
+
+		public String toString() {
+			return "TinyLFU";
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks fuzzyKeywords, which runs a Levenshtein automaton over the sorted term
+ * dictionary, against computing the edit distance from the query word to every keyword
+ * of the index, for edit distances 0 to 2. The query words are keywords with random
+ * edits made to them, and random strings. The same is checked for dictionaries of
+ * random terms over a small alphabet, in which most terms have many close neighbours,
+ * and fuzzySearch is checked to merge exactly the keywords found. Then documents are
+ * taken out of the index and new ones merged, with keywords never seen before, and
+ * fuzzyKeywords and keywordsWithPrefix of the engine and of its snapshots are checked
+ * as the keywords kept aside from the dictionary pile up and it is built again. Runs
+ * on the synthetic corpus of IndexMemoryBenchmark, or on the documents listed in a
+ * docs file, and prints the time taken per query by the automaton and by the distances.
+ *
+ * Usage: java search.FuzzySearchCheck [docsFile noiseWordsFile]
+ *
+ */
+public class FuzzySearchCheck {
+
+	private static final int QUERIES = 300;
+
+	private static final int K = 10;
+
+	private static final String ALPHABET = "abcd";
+
+	/**
+	 * Number of changes to the index, each adding or taking out a few keywords.
+	 */
+	private static final int CHANGES = 300;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		LittleSearchEngine engine;
+		if (args.length > 1) {
+			engine = new LittleSearchEngine();
+			engine.makeIndex(args[0], args[1]);
+		} else {
+			engine = IndexMemoryBenchmark.syntheticCorpus();
+		}
+		String[] keywords = engine.keywordsIndex.keySet().toArray(new String[0]);
+		Arrays.sort(keywords);
+		Random random = new Random(20);
+		String[] words = new String[QUERIES];
+		for (int q = 0; q < QUERIES; q++) {
+			words[q] = word(keywords, random, "abcdefghijklmnopqrstuvwxyz0123456789");
+		}
+
+		// build the sorted term dictionary before timing
+		engine.fuzzyKeywords("", 0);
+		long automaton = 0, distances = 0;
+		for (int q = 0; q < QUERIES; q++) {
+			for (int edits = 0; edits <= 2; edits++) {
+				long start = System.nanoTime();
+				ArrayList<String> found = engine.fuzzyKeywords(words[q], edits);
+				automaton += System.nanoTime() - start;
+				start = System.nanoTime();
+				ArrayList<String> expected = withinDistance(keywords, words[q], edits);
+				distances += System.nanoTime() - start;
+				if (!expected.equals(found)) {
+					throw new IllegalStateException("Keywords within " + edits + " of " + words[q]
+							+ " are " + expected + ", not " + found);
+				}
+				ArrayList<String> result = engine.fuzzySearch(words[q], edits, K);
+				if (!(expected.isEmpty() ? result == null : engine.topKSearch(expected, K).equals(result))) {
+					throw new IllegalStateException("Fuzzy search of " + words[q] + " differs");
+				}
+			}
+		}
+
+		for (int size = 1; size <= 10000; size *= 10) {
+			HashSet<String> terms = new HashSet<String>();
+			while (terms.size() < size) {
+				terms.add(randomString(random, ALPHABET, 1 + random.nextInt(7)));
+			}
+			String[] sorted = terms.toArray(new String[0]);
+			Arrays.sort(sorted);
+			SortedTermDictionary dictionary = new SortedTermDictionary(terms);
+			for (int q = 0; q < QUERIES; q++) {
+				String word = word(sorted, random, ALPHABET);
+				for (int edits = 0; edits <= 2; edits++) {
+					if (!withinDistance(sorted, word, edits).equals(
+							dictionary.accepted(new LevenshteinAutomaton(word, edits)))) {
+						throw new IllegalStateException("Terms within " + edits + " of " + word + " differ");
+					}
+				}
+			}
+		}
+		Random changes = new Random(191);
+		ArrayList<String> docs = CheckCorpus.documents(engine);
+		for (int c = 0; c < CHANGES; c++) {
+			if (changes.nextBoolean()) {
+				engine.removeDocument(docs.get(changes.nextInt(docs.size())));
+			} else {
+				ArrayList<String> terms = new ArrayList<String>();
+				for (int i = 0; i < 5; i++) {
+					terms.add(randomString(changes, "abcdefghijklmnopqrstuvwxyz", 3 + changes.nextInt(5)));
+				}
+				engine.mergeKeyWords(CheckCorpus.randomKeywords("new" + c, terms, 5, changes));
+			}
+			LittleSearchEngine searched = changes.nextBoolean() ? engine : engine.snapshot();
+			keywords = searched.keywordsIndex.keySet().toArray(new String[0]);
+			Arrays.sort(keywords);
+			String word = word(keywords, changes, "abcdefghijklmnopqrstuvwxyz");
+			int edits = changes.nextInt(3);
+			if (!withinDistance(keywords, word, edits).equals(searched.fuzzyKeywords(word, edits))) {
+				throw new IllegalStateException("Keywords within " + edits + " of " + word + " differ after "
+						+ (c + 1) + " changes");
+			}
+			String prefix = word.substring(0, Math.min(word.length(), changes.nextInt(4)));
+			ArrayList<String> expected = new ArrayList<String>();
+			for (String keyword : keywords) {
+				if (keyword.startsWith(prefix)) {
+					expected.add(keyword);
+				}
+			}
+			if (!expected.equals(searched.keywordsWithPrefix(prefix))) {
+				throw new IllegalStateException("Keywords with prefix " + prefix + " differ after "
+						+ (c + 1) + " changes");
+			}
+		}
+
+		System.out.printf("%d words at 0-2 edits agree with the edit distance to every keyword%n", QUERIES);
+		System.out.printf("  automaton  %10.1f us/query%n", automaton / 1000.0 / (QUERIES * 3));
+		System.out.printf("  distances  %10.1f us/query%n", distances / 1000.0 / (QUERIES * 3));
+	}
+
+	/**
+	 * Picks a query word: a term with 0 to 3 random edits, or a random string.
+	 */
+	private static String word(String[] sorted, Random random, String alphabet) {
+		if (sorted.length == 0 || random.nextInt(5) == 0) {
+			return randomString(random, alphabet, random.nextInt(9));
+		}
+		StringBuilder sb = new StringBuilder(sorted[random.nextInt(sorted.length)]);
+		for (int e = random.nextInt(4); e > 0; e--) {
+			int i = random.nextInt(sb.length() + 1);
+			char c = alphabet.charAt(random.nextInt(alphabet.length()));
+			switch (random.nextInt(3)) {
+			case 0:
+				sb.insert(i, c);
+				break;
+			case 1:
+				if (i < sb.length()) {
+					sb.deleteCharAt(i);
+				}
+				break;
+			default:
+				if (i < sb.length()) {
+					sb.setCharAt(i, c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the terms, in sorted order, whose edit distance from the word is at most
+	 * maxEdits.
+	 */
+	private static ArrayList<String> withinDistance(String[] sorted, String word, int maxEdits) {
+		ArrayList<String> result = new ArrayList<String>();
+		for (String term : sorted) {
+			if (Math.abs(term.length() - word.length()) <= maxEdits && distance(term, word) <= maxEdits) {
+				result.add(term);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Edit distance of two strings, by the full dynamic programming table.
+	 */
+	private static int distance(String s, String t) {
+		int[][] d = new int[s.length() + 1][t.length() + 1];
+		for (int i = 0; i <= s.length(); i++) {
+			d[i][0] = i;
+		}
+		for (int j = 0; j <= t.length(); j++) {
+			d[0][j] = j;
+		}
+		for (int i = 1; i <= s.length(); i++) {
+			for (int j = 1; j <= t.length(); j++) {
+				int substitute = d[i - 1][j - 1] + (s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1);
+				d[i][j] = Math.min(substitute, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+			}
+		}
+		return d[s.length()][t.length()];
+	}
+
+	private static String randomString(Random random, String alphabet, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+		}
+		return new String(chars);
+	}
+}
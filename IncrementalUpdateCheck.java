@@ -0,0 +1,90 @@
+package search;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Checks that changing the index one document at a time gives the same index as
+ * building it again from scratch. A synthetic text corpus is written to a temporary
+ * directory and indexed, then random changes are made to it: documents rewritten and
+ * updated with updateDocument, taken out with removeDocument, and new or removed ones
+ * added with addDocument. Every so often, a new engine indexes the documents that are
+ * left with makeIndex, and must have the same occurrence lists and documents, with
+ * occurrences of the same frequency in any order. The time taken per change and per
+ * rebuild is printed.
+ *
+ * Usage: java search.IncrementalUpdateCheck
+ *
+ */
+public class IncrementalUpdateCheck {
+
+	private static final int DOCS = 500;
+
+	private static final int CHANGES = 2000;
+
+	/**
+	 * Number of changes between rebuilds.
+	 */
+	private static final int CHANGES_PER_REBUILD = 250;
+
+	public static void main(String[] args)
+	throws IOException {
+		Path dir = Files.createTempDirectory("incrementalupdatecheck");
+		try {
+			Random random = new Random(5);
+			ArrayList<String> files = CheckCorpus.writeCorpus(dir, DOCS, random);
+			String noiseWords = dir.resolve("noisewords.txt").toString();
+			LittleSearchEngine engine = new LittleSearchEngine();
+			engine.makeIndex(dir.resolve("docs.txt").toString(), noiseWords);
+			LinkedHashSet<String> indexed = new LinkedHashSet<String>(files);
+
+			long changes = 0, rebuilds = 0;
+			for (int c = 0; c < CHANGES; c++) {
+				String file = files.get(random.nextInt(files.size()));
+				long start = System.nanoTime();
+				switch (random.nextInt(4)) {
+				case 0:
+					engine.removeDocument(file);
+					indexed.remove(file);
+					break;
+				case 1:
+					file = dir.resolve("new" + c + ".txt").toString();
+					CheckCorpus.writeDocument(Paths.get(file), random);
+					files.add(file);
+					start = System.nanoTime();
+					engine.addDocument(file);
+					indexed.add(file);
+					break;
+				default:
+					// rewrite the document, or add it again if it was removed
+					CheckCorpus.writeDocument(Paths.get(file), random);
+					start = System.nanoTime();
+					engine.updateDocument(file);
+					indexed.add(file);
+				}
+				changes += System.nanoTime() - start;
+
+				if (c % CHANGES_PER_REBUILD == CHANGES_PER_REBUILD - 1) {
+					Path listed = dir.resolve("indexed.txt");
+					Files.write(listed, indexed, StandardCharsets.UTF_8);
+					start = System.nanoTime();
+					LittleSearchEngine rebuilt = new LittleSearchEngine();
+					rebuilt.makeIndex(listed.toString(), noiseWords);
+					rebuilds += System.nanoTime() - start;
+					CheckCorpus.checkSameIndex("Index after " + (c + 1) + " changes", rebuilt.keywordsIndex,
+							engine.keywordsIndex, false);
+					if (!CheckCorpus.documents(rebuilt).equals(CheckCorpus.documents(engine))) {
+						throw new IllegalStateException("Documents after " + (c + 1) + " changes differ");
+					}
+				}
+			}
+			System.out.printf("%d changes to %d documents agree with rebuilding the index%n", CHANGES, DOCS);
+			System.out.printf("  change   %10.3f ms%n", changes / 1e6 / CHANGES);
+			System.out.printf("  rebuild  %10.3f ms%n", rebuilds / 1e6 / (CHANGES / CHANGES_PER_REBUILD));
+		} finally {
+			CheckCorpus.delete(dir);
+		}
+	}
+}
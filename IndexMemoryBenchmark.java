@@ -0,0 +1,104 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reports the heap used by an index, as a LittleSearchEngine holds it (before), and as
+ * PostingsLists in its CompactIndex (after). The engine is measured as it is, with its
+ * occurrence lists, document table, norms, the keywords of each document and noise
+ * words; the forward index that setForwardIndex adds is reported separately. Two
+ * corpora are measured: the documents listed in the docs file, and a synthetic corpus
+ * of about 1,000,000 postings with skewed keyword use. Heap use is read from the runtime after garbage collection, so figures
+ * are approximate.
+ *
+ * Usage: java search.IndexMemoryBenchmark [docsFile noiseWordsFile]
+ *
+ */
+public class IndexMemoryBenchmark {
+
+	private static final int SYNTHETIC_DOCS = 10000;
+
+	private static final int SYNTHETIC_TERMS_PER_DOC = 100;
+
+	private static final int SYNTHETIC_VOCABULARY = 50000;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		String docsFile = args.length > 1 ? args[0] : "docs.txt";
+		String noiseWordsFile = args.length > 1 ? args[1] : "noisewords.txt";
+
+		long base = usedHeap();
+		report(docsFile, corpus(docsFile, noiseWordsFile), base);
+		base = usedHeap();
+		report("synthetic", syntheticCorpus(), base);
+	}
+
+	private static LittleSearchEngine corpus(String docsFile, String noiseWordsFile)
+	throws FileNotFoundException {
+		LittleSearchEngine engine = new LittleSearchEngine();
+		engine.makeIndex(docsFile, noiseWordsFile);
+		return engine;
+	}
+
+	/**
+	 * Builds an engine over a synthetic corpus of about 1,000,000 postings, in which low
+	 * numbered terms occur in more documents than high numbered ones.
+	 *
+	 * @return Engine with the synthetic corpus indexed
+	 */
+	static LittleSearchEngine syntheticCorpus() {
+		LittleSearchEngine engine = new LittleSearchEngine();
+		Random random = new Random(42);
+		for (int d = 0; d < SYNTHETIC_DOCS; d++) {
+			String doc = "doc" + d;
+			HashMap<String,Occurrence> kws = new HashMap<String,Occurrence>();
+			while (kws.size() < SYNTHETIC_TERMS_PER_DOC) {
+				// squaring skews use towards low numbered terms
+				double r = random.nextDouble();
+				String term = "term" + (int)(r * r * SYNTHETIC_VOCABULARY);
+				kws.put(term, new Occurrence(doc, 1 + random.nextInt(20)));
+			}
+			engine.mergeKeyWords(kws);
+		}
+		return engine;
+	}
+
+	/**
+	 * Prints the heap used by the engine, then the heap its forward index adds, and the
+	 * heap used by its compact copy once the engine is dropped. The caller must hold no
+	 * other reference to the engine.
+	 */
+	private static void report(String corpus, LittleSearchEngine engine, long base) {
+		int postings = 0;
+		for (ArrayList<Occurrence> occs : engine.keywordsIndex.values()) {
+			postings += occs.size();
+		}
+		long before = usedHeap() - base;
+		engine.setForwardIndex(true);
+		long forward = usedHeap() - base - before;
+		engine.setForwardIndex(false);
+
+		CompactIndex compact = engine.compactIndex();
+		engine = null;
+		long after = usedHeap() - base;
+
+		System.out.printf("%s: %d keywords, %d postings%n", corpus, compact.size(), postings);
+		System.out.printf("  engine        %,12d bytes  (%.1f per posting)%n", 
+				before, (double)before / postings);
+		System.out.printf("  forward index %,12d bytes  (%.1f per posting, if kept)%n", 
+				forward, (double)forward / postings);
+		System.out.printf("  CompactIndex  %,12d bytes  (%.1f per posting)%n", 
+				after, (double)after / postings);
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+		}
+		return used;
+	}
+}
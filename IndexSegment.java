@@ -0,0 +1,224 @@
+package search;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Random;
+
+/**
+ * This class writes a CompactIndex to a binary segment file, and opens segment files
+ * by memory-mapping them. A segment holds, in order, all numbers being big-endian:
+ *
+ *   magic, version                                 (int, int)
+ *   number of noise words, then each noise word    (int, string...)
+ *   number of document ids, then each name         (int, string...)
+ *   number of terms, then for each term, by id:
+ *     term, number of postings, number of bytes    (string, int, int)
+ *     postings in VBytePostings format             (bytes)
+ *
+ * A string is its number of UTF-8 bytes followed by the bytes. The name of a removed
+ * document is written as the number -1, so that document ids are kept.
+ * Postings hold document ids and frequencies only, not keyword positions, which is why
+ * LittleSearchEngine.saveIndex refuses a positional engine.
+ *
+ * Opening a segment reads the noise words, documents and terms, but leaves the postings
+ * in the mapped file: each keyword's postings are a VBytePostings over a slice of the
+ * mapping, and are decoded from it only when searched.
+ *
+ */
+class IndexSegment {
+
+	private static final int MAGIC = 0x4c534549;  // "LSEI"
+
+	private static final int VERSION = 1;
+
+	private static final Random RANDOM = new Random();
+
+	/**
+	 * Writes an index to a segment file, replacing the file if it exists. The segment is
+	 * written to a temporary file in the same directory, forced to disk, and then moved
+	 * over the segment file atomically, so that a failed write leaves the old file as
+	 * it was. The temporary file is created as any new file is, with the permissions
+	 * the umask gives, and takes those of the segment file it replaces if there is one,
+	 * so that moving it over the segment file keeps who may read it.
+	 *
+	 * @param index Index to write
+	 * @param path Segment file
+	 * @throws IOException If the file could not be written, or the file system cannot
+	 *         replace it atomically
+	 */
+	static void write(CompactIndex index, Path path)
+	throws IOException {
+		Path dir = path.toAbsolutePath().getParent();
+		Path temp;
+		FileChannel channel;
+		while (true) {
+			// not Files.createTempFile, which makes the file readable by its owner only
+			temp = dir.resolve(path.getFileName() + "." + Long.toHexString(RANDOM.nextLong()) + ".tmp");
+			try {
+				channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				break;
+			} catch (FileAlreadyExistsException e) {
+				// another writer's temporary file; pick another name
+			}
+		}
+		boolean written = false;
+		try {
+			try {
+				write(index, new DataOutputStream(
+						new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)));
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+			if (Files.exists(path)) {
+				copyPermissions(path, temp);
+			}
+			Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			written = true;
+		} finally {
+			if (!written) {
+				Files.deleteIfExists(temp);
+			}
+		}
+	}
+
+	/**
+	 * Gives a file the POSIX permissions of another, if the file system has them.
+	 */
+	private static void copyPermissions(Path from, Path to)
+	throws IOException {
+		if (Files.getFileStore(to).supportsFileAttributeView(PosixFileAttributeView.class)) {
+			Files.setPosixFilePermissions(to, Files.getPosixFilePermissions(from));
+		}
+	}
+
+	/**
+	 * Writes an index in segment format, and flushes the stream without closing it.
+	 */
+	private static void write(CompactIndex index, DataOutputStream out)
+	throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(index.noiseWords.length);
+		for (String word : index.noiseWords) {
+			writeString(out, word);
+		}
+		out.writeInt(index.documents.maxId());
+		for (int id = 0; id < index.documents.maxId(); id++) {
+			writeString(out, index.documents.name(id));
+		}
+		out.writeInt(index.terms.size());
+		for (int id = 0; id < index.terms.size(); id++) {
+			VBytePostings p = vbyte(index.postings[id]);
+			ByteBuffer data = p.data();
+			writeString(out, index.terms.term(id));
+			out.writeInt(p.size());
+			out.writeInt(data.limit());
+			if (data.hasArray()) {
+				out.write(data.array(), data.arrayOffset(), data.limit());
+			} else {
+				byte[] bytes = new byte[data.limit()];
+				data.get(bytes);
+				out.write(bytes);
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Opens a segment file by memory-mapping it.
+	 *
+	 * @param path Segment file
+	 * @return Index whose postings are read from the mapped file
+	 * @throws IOException If the file could not be read, or is not a segment file
+	 */
+	static CompactIndex open(Path path)
+	throws IOException {
+		ByteBuffer buf;
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(path + " is too large to map");
+			}
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			channel.close();
+		}
+
+		try {
+			if (buf.getInt() != MAGIC) {
+				throw new IOException(path + " is not an index segment");
+			}
+			int version = buf.getInt();
+			if (version != VERSION) {
+				throw new IOException(path + " has unsupported segment version " + version);
+			}
+			String[] noiseWords = new String[buf.getInt()];
+			for (int i = 0; i < noiseWords.length; i++) {
+				noiseWords[i] = readString(buf);
+			}
+			int docs = buf.getInt();
+			String[] names = new String[docs];
+			for (int id = 0; id < docs; id++) {
+				names[id] = readString(buf);
+			}
+			int termCount = buf.getInt();
+			TermDictionary terms = new TermDictionary(termCount);
+			Postings[] postings = new Postings[termCount];
+			for (int id = 0; id < termCount; id++) {
+				terms.add(readString(buf));
+				int size = buf.getInt();
+				int bytes = buf.getInt();
+				ByteBuffer data = buf.slice();
+				data.limit(bytes);
+				postings[id] = new VBytePostings(data, size);
+				buf.position(buf.position() + bytes);
+			}
+			return new CompactIndex(terms, new DocumentTable(names), postings, noiseWords);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(path + " is truncated", e);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(path + " is corrupt", e);
+		}
+	}
+
+	/**
+	 * Returns postings in VBytePostings format, encoding them if they are in another format.
+	 */
+	private static VBytePostings vbyte(Postings postings) {
+		if (postings instanceof VBytePostings) {
+			return (VBytePostings)postings;
+		}
+		PostingsList list = new PostingsList(postings.size());
+		PostingsCursor c = postings.cursor();
+		while (c.next()) {
+			list.append(c.doc(), c.frequency());
+		}
+		return (VBytePostings)PostingsCodec.VBYTE.encode(list);
+	}
+
+	private static void writeString(DataOutputStream out, String s)
+	throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int length = buf.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
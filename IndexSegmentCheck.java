@@ -0,0 +1,111 @@
+package search;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Checks that an index saved to a segment file comes back as it was. Some documents are
+ * first taken out of the index, and merged again with new frequencies, so that the
+ * segment holds the ids of removed documents. The index is saved, and loaded into a
+ * new engine, which must have the same occurrence lists, documents and noise words;
+ * saving and loading that engine again must give the lists in exactly the same order.
+ * The segment opened as a CompactIndex must give the same top5search results as the
+ * loaded engine. A truncated segment must fail to load and leave the engine as it was,
+ * and a positional engine must refuse to be saved. Runs on the synthetic corpus of
+ * IndexMemoryBenchmark, or on the documents listed in a docs file.
+ *
+ * Usage: java search.IndexSegmentCheck [docsFile noiseWordsFile]
+ *
+ */
+public class IndexSegmentCheck {
+
+	private static final int CHANGES = 100;
+
+	private static final int QUERIES = 20000;
+
+	private static final int COMMON_TERMS = 200;
+
+	public static void main(String[] args)
+	throws IOException {
+		LittleSearchEngine engine = CheckCorpus.engine(args);
+		ArrayList<String> terms = CheckCorpus.termsByListLength(engine);
+		List<String> common = terms.subList(0, Math.min(COMMON_TERMS, terms.size()));
+		ArrayList<String> docs = CheckCorpus.documents(engine);
+		Random random = new Random(9);
+		for (int c = 0; c < CHANGES; c++) {
+			String doc = docs.get(random.nextInt(docs.size()));
+			engine.removeDocument(doc);
+			if (random.nextBoolean()) {
+				engine.mergeKeyWords(CheckCorpus.randomKeywords(doc, common, 20, random));
+			}
+		}
+
+		Path dir = Files.createTempDirectory("indexsegmentcheck");
+		try {
+			Path saved = dir.resolve("saved.idx");
+			engine.saveIndex(saved);
+			LittleSearchEngine loaded = new LittleSearchEngine();
+			loaded.loadIndex(saved);
+			check("Loaded index", engine, loaded, false);
+
+			Path again = dir.resolve("again.idx");
+			loaded.saveIndex(again);
+			LittleSearchEngine reloaded = new LittleSearchEngine();
+			reloaded.loadIndex(again);
+			check("Index loaded twice", loaded, reloaded, true);
+
+			CompactIndex compact = CompactIndex.load(saved);
+			for (int q = 0; q < QUERIES; q++) {
+				String kw1 = terms.get(random.nextInt(Math.min(COMMON_TERMS, terms.size())));
+				String kw2 = terms.get(random.nextInt(terms.size()));
+				ArrayList<String> expected = loaded.top5search(kw1, kw2);
+				ArrayList<String> result = compact.top5search(kw1, kw2);
+				if (expected == null ? result != null : !expected.equals(result)) {
+					throw new IllegalStateException("Result of " + kw1 + " or " + kw2 + " in the segment is "
+							+ result + ", not " + expected);
+				}
+			}
+
+			byte[] bytes = Files.readAllBytes(saved);
+			Path truncated = dir.resolve("truncated.idx");
+			Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+			try {
+				reloaded.loadIndex(truncated);
+				throw new IllegalStateException("A truncated segment was loaded");
+			} catch (IOException e) {
+				check("Index after a failed load", loaded, reloaded, true);
+			}
+
+			LittleSearchEngine positional = new LittleSearchEngine(LittleSearchEngine.ReadStrategy.AUTO, true);
+			try {
+				positional.saveIndex(dir.resolve("positional.idx"));
+				throw new IllegalStateException("A positional index was saved");
+			} catch (IllegalStateException e) {
+				if (Files.exists(dir.resolve("positional.idx"))) {
+					throw e;
+				}
+			}
+		} finally {
+			CheckCorpus.delete(dir);
+		}
+		System.out.printf("%d keywords of %d documents come back from a segment, and %d queries "
+				+ "of the segment agree with the loaded engine%n", engine.keywordsIndex.size(),
+				engine.documents.size(), QUERIES);
+	}
+
+	/**
+	 * Throws IllegalStateException if two engines differ in their occurrence lists,
+	 * documents or noise words.
+	 */
+	private static void check(String what, LittleSearchEngine expected, LittleSearchEngine actual,
+			boolean sameOrder) {
+		CheckCorpus.checkSameIndex(what, expected.keywordsIndex, actual.keywordsIndex, sameOrder);
+		if (!CheckCorpus.documents(expected).equals(CheckCorpus.documents(actual))) {
+			throw new IllegalStateException(what + ": documents differ");
+		}
+		if (!expected.getNoiseWords().equals(actual.getNoiseWords())) {
+			throw new IllegalStateException(what + ": noise words differ");
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package search;
+
+/**
+ * This class remembers what raw tokens of text resolve to, as keywords, so that a token
+ * that has been seen before, such as "Alice," or "the", is not stripped, lowercased and
+ * checked against the noise words again. Tokens that are not keywords are remembered
+ * too. Each cache is made for one set of noise words, and is replaced by a new one when
+ * the engine's count of noise word changes moves on.
+ *
+ * The cache is a direct-mapped table of a fixed number of entries: each token can only
+ * be in the slot its hash picks, and a new token replaces the one in its slot. Entries
+ * are immutable, and are written to and read from the table without locks, so indexing
+ * threads can share a cache. A thread may miss an entry just written by another, and
+ * then resolves the token again, which gives the same keyword.
+ *
+ */
+class KeywordCache {
+
+	/**
+	 * A token and the keyword it resolves to.
+	 */
+	private static final class Entry {
+
+		/**
+		 * Raw token.
+		 */
+		final String token;
+
+		/**
+		 * Keyword of the token, or null if the token is not a keyword.
+		 */
+		final String keyword;
+
+		Entry(String token, String keyword) {
+			this.token = token;
+			this.keyword = keyword;
+		}
+	}
+
+	/**
+	 * Direct-mapped table of entries.
+	 */
+	private final Entry[] entries;
+
+	/**
+	 * The noise words the keywords were resolved against.
+	 */
+	final NoiseWordSet noiseWords;
+
+	/**
+	 * Count of noise word changes of the engine when this cache was made. The cache is
+	 * replaced once the engine's count differs.
+	 */
+	final int noiseWordChanges;
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param capacity Largest number of tokens held, rounded up to a power of 2
+	 * @param noiseWords The set of all noise words
+	 * @param noiseWordChanges Count of noise word changes the set was read after
+	 */
+	KeywordCache(int capacity, NoiseWordSet noiseWords, int noiseWordChanges) {
+		int n = 16;
+		while (n < capacity) {
+			n *= 2;
+		}
+		entries = new Entry[n];
+		this.noiseWords = noiseWords;
+		this.noiseWordChanges = noiseWordChanges;
+	}
+
+	/**
+	 * Returns the keyword of a raw token, as LittleSearchEngine.getKeyWord does.
+	 *
+	 * @param token Characters of the token, starting at index 0; they may be changed
+	 * @param length Number of characters in the token
+	 * @return Keyword, or null if the token is not a keyword
+	 */
+	String keyword(char[] token, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + token[i];
+		}
+		int slot = (hash ^ (hash >>> 16)) & (entries.length - 1);
+		Entry e = entries[slot];
+		if (e != null && matches(e.token, token, length)) {
+			return e.keyword;
+		}
+
+		String raw = new String(token, 0, length);
+		String keyword = null;
+		int len = KeywordTokenizer.keywordLength(token, length);
+		if (len > 0 && !noiseWords.contains(token, len)) {
+			// a token that is already a keyword is kept as it is
+			keyword = matches(raw, token, len) ? raw : new String(token, 0, len);
+		}
+		entries[slot] = new Entry(raw, keyword);
+		return keyword;
+	}
+
+	private static boolean matches(String s, char[] token, int length) {
+		if (s.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) != token[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,332 @@
+package search;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * This class splits the text of a document into keywords, and counts the occurrences
+ * of each keyword in the document. The text is walked once, character by character.
+ * Each word is stripped of trailing punctuation, checked and lowercased in place in a
+ * reusable buffer, and looked up in a table of the keywords seen so far in the document,
+ * so a String is only created the first time a keyword is seen.
+ *
+ * If asked to, the tokenizer also records the position of each keyword, which is the
+ * number of words before it in the document, and then makes PositionalOccurrences.
+ *
+ * If given a KeywordCache, the tokenizer resolves each word through it instead, so a
+ * word seen before, in any document, is neither stripped nor checked again.
+ *
+ * Keywords follow the same rules as LittleSearchEngine.getKeyWord.
+ *
+ */
+class KeywordTokenizer {
+
+	/**
+	 * The set of all noise words.
+	 */
+	private final NoiseWordSet noiseWords;
+
+	/**
+	 * Cache of the keywords of raw words, or null to resolve every word.
+	 */
+	private final KeywordCache cache;
+
+	/**
+	 * Characters of the word being scanned.
+	 */
+	private char[] token = new char[32];
+
+	/**
+	 * Number of characters in the word being scanned.
+	 */
+	private int length;
+
+	/**
+	 * Open addressing table of the distinct keywords seen in the document, with their counts
+	 * in the same slots of the counts array.
+	 */
+	private String[] words = new String[64];
+
+	/**
+	 * Number of occurrences of each keyword in the words table.
+	 */
+	private int[] counts = new int[64];
+
+	/**
+	 * Number of distinct keywords in the words table.
+	 */
+	private int size;
+
+	/**
+	 * Positions of each keyword in the words table, or null if positions are not recorded.
+	 */
+	private int[][] positions;
+
+	/**
+	 * Number of words scanned so far in the document, keywords or not.
+	 */
+	private int position;
+
+	/**
+	 * Initializes a tokenizer that resolves words through a keyword cache, and records
+	 * the positions of keywords if asked to.
+	 *
+	 * @param noiseWords The set of all noise words
+	 * @param cache Cache of keywords made for the same noise words, or null for none
+	 * @param recordPositions True to record the positions of keywords
+	 */
+	KeywordTokenizer(NoiseWordSet noiseWords, KeywordCache cache, boolean recordPositions) {
+		this.noiseWords = noiseWords;
+		this.cache = cache;
+		if (recordPositions) {
+			positions = new int[words.length][];
+		}
+	}
+
+	/**
+	 * Scans all the text that can be read from the given reader.
+	 *
+	 * @param in Reader of document text
+	 * @throws IOException If the text could not be read
+	 */
+	void scan(Reader in)
+	throws IOException {
+		char[] buf = new char[8192];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			scan(buf, 0, n);
+		}
+	}
+
+	/**
+	 * Scans a chunk of document text. A word may continue across chunks.
+	 *
+	 * @param buf Text characters
+	 * @param off Index of first character to scan
+	 * @param len Number of characters to scan
+	 */
+	void scan(char[] buf, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			char c = buf[i];
+			if (c <= ' ') {
+				endWord();
+			} else {
+				if (length == token.length) {
+					token = Arrays.copyOf(token, length * 2);
+				}
+				token[length++] = c;
+			}
+		}
+	}
+
+	/**
+	 * Scans a chunk of document text held as bytes in an ASCII-compatible encoding, from
+	 * the position to the limit of the buffer. Bytes that are not ASCII are never letters,
+	 * so words that hold them are not keywords, as when the text is read as characters.
+	 * A word may continue across chunks.
+	 *
+	 * @param buf Text bytes
+	 */
+	void scan(ByteBuffer buf) {
+		for (int i = buf.position(); i < buf.limit(); i++) {
+			char c = (char)(buf.get(i) & 0xff);
+			if (c <= ' ') {
+				endWord();
+			} else {
+				if (length == token.length) {
+					token = Arrays.copyOf(token, length * 2);
+				}
+				token[length++] = c;
+			}
+		}
+	}
+
+	/**
+	 * Ends the scan of a document, and returns its keywords. The tokenizer is then ready
+	 * to scan another document.
+	 *
+	 * @param docFile Name of the document file that was scanned
+	 * @return Hash table of keywords in the document, each associated with an Occurrence object,
+	 *         or a PositionalOccurrence if positions are recorded
+	 */
+	HashMap<String,Occurrence> finish(String docFile) {
+		endWord();
+		HashMap<String,Occurrence> map = new HashMap<String,Occurrence>(size * 4 / 3 + 1);
+		for (int i = 0; i < words.length; i++) {
+			if (words[i] != null) {
+				Occurrence occ = positions == null ? new Occurrence(docFile, counts[i])
+						: new PositionalOccurrence(docFile, positions[i], counts[i]);
+				map.put(words[i], occ);
+				if (positions != null) {
+					positions[i] = null;
+				}
+			}
+			words[i] = null;
+		}
+		size = 0;
+		position = 0;
+		return map;
+	}
+
+	/**
+	 * Strips trailing punctuation off a word, checks that what is left consists only of
+	 * ASCII letters, and lowercases it, all in place. Punctuation characters are
+	 * '.', ',', '?', ':', ';' and '!'. Noise words are not checked here.
+	 *
+	 * @param word Characters of the word, starting at index 0
+	 * @param length Number of characters in the word
+	 * @return Length of the keyword left at the start of the array, or -1 if the word is not a keyword
+	 */
+	static int keywordLength(char[] word, int length) {
+		while (length > 0 && isPunctuation(word[length - 1])) {
+			length--;
+		}
+		if (length == 0) {
+			return -1;
+		}
+		for (int i = 0; i < length; i++) {
+			char c = word[i];
+			if (c >= 'A' && c <= 'Z') {
+				word[i] = (char)(c + ('a' - 'A'));
+			} else if (c < 'a' || c > 'z') {
+				return -1;
+			}
+		}
+		return length;
+	}
+
+	private static boolean isPunctuation(char c) {
+		return c == '.' || c == ',' || c == '?' || c == ':' || c == ';' || c == '!';
+	}
+
+	/**
+	 * Counts the word that was just scanned, if it is a keyword.
+	 */
+	private void endWord() {
+		if (length == 0) {
+			return;
+		}
+		if (cache != null) {
+			String keyword = cache.keyword(token, length);
+			length = 0;
+			int wordPosition = position++;
+			if (keyword != null) {
+				count(keyword, wordPosition);
+			}
+			return;
+		}
+		int len = keywordLength(token, length);
+		length = 0;
+		int wordPosition = position++;
+		if (len < 0) {
+			return;
+		}
+
+		int hash = 0;
+		for (int i = 0; i < len; i++) {
+			hash = 31 * hash + token[i];
+		}
+		int mask = words.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (words[slot] != null) {
+			if (matches(words[slot], len)) {
+				addOccurrence(slot, wordPosition);
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		// first time this keyword is seen in the document
+		if (noiseWords.contains(token, len)) {
+			return;
+		}
+		addKeyword(slot, new String(token, 0, len), wordPosition);
+	}
+
+	/**
+	 * Counts a keyword resolved by the cache, which is known not to be a noise word.
+	 */
+	private void count(String keyword, int wordPosition) {
+		int hash = keyword.hashCode();
+		int mask = words.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (words[slot] != null) {
+			if (words[slot].equals(keyword)) {
+				addOccurrence(slot, wordPosition);
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		addKeyword(slot, keyword, wordPosition);
+	}
+
+	/**
+	 * Counts another occurrence of the keyword in a slot of the words table.
+	 */
+	private void addOccurrence(int slot, int wordPosition) {
+		if (positions != null) {
+			if (counts[slot] == positions[slot].length) {
+				positions[slot] = Arrays.copyOf(positions[slot], counts[slot] * 2);
+			}
+			positions[slot][counts[slot]] = wordPosition;
+		}
+		counts[slot]++;
+	}
+
+	/**
+	 * Puts a keyword seen for the first time in the document in an empty slot of the
+	 * words table.
+	 */
+	private void addKeyword(int slot, String keyword, int wordPosition) {
+		words[slot] = keyword;
+		counts[slot] = 1;
+		if (positions != null) {
+			positions[slot] = new int[] {wordPosition, 0};
+		}
+		if (++size * 2 > words.length) {
+			grow();
+		}
+	}
+
+	private boolean matches(String word, int len) {
+		if (word.length() != len) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (word.charAt(i) != token[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Doubles the size of the words table.
+	 */
+	private void grow() {
+		String[] oldWords = words;
+		int[] oldCounts = counts;
+		int[][] oldPositions = positions;
+		words = new String[oldWords.length * 2];
+		counts = new int[oldWords.length * 2];
+		if (oldPositions != null) {
+			positions = new int[oldWords.length * 2][];
+		}
+		int mask = words.length - 1;
+		for (int i = 0; i < oldWords.length; i++) {
+			if (oldWords[i] != null) {
+				int hash = oldWords[i].hashCode();
+				int slot = (hash ^ (hash >>> 16)) & mask;
+				while (words[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				words[slot] = oldWords[i];
+				counts[slot] = oldCounts[i];
+				if (oldPositions != null) {
+					positions[slot] = oldPositions[i];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package search;
+
+/**
+ * This class is a Levenshtein automaton: it accepts the strings that are within a given
+ * edit distance (insertions, deletions and substitutions of single characters) of a
+ * query word. A state is a row of the edit distance table of the query against the
+ * characters read so far, so reading a character costs one pass over the query, and
+ * states of a common prefix can be shared by all the strings that start with it.
+ *
+ * Once every entry of a row is over the distance, no continuation of the characters
+ * read so far can be accepted, so a walk over sorted terms can skip all terms that
+ * start with them.
+ *
+ */
+class LevenshteinAutomaton {
+
+	/**
+	 * Characters of the query word.
+	 */
+	private final char[] query;
+
+	/**
+	 * Largest edit distance accepted.
+	 */
+	private final int maxEdits;
+
+	/**
+	 * Builds the automaton of the strings within an edit distance of a word.
+	 *
+	 * @param query Query word
+	 * @param maxEdits Largest edit distance accepted
+	 */
+	LevenshteinAutomaton(String query, int maxEdits) {
+		this.query = query.toCharArray();
+		this.maxEdits = maxEdits;
+	}
+
+	/**
+	 * Start state, before any character is read.
+	 *
+	 * @return New start state
+	 */
+	int[] start() {
+		int[] row = new int[query.length + 1];
+		for (int j = 0; j < row.length; j++) {
+			row[j] = j;
+		}
+		return row;
+	}
+
+	/**
+	 * Reads a character.
+	 *
+	 * @param row Current state
+	 * @param c Character read
+	 * @param next Array to hold the next state, of the same length as row
+	 * @return The next state, in the next array
+	 */
+	int[] step(int[] row, char c, int[] next) {
+		next[0] = row[0] + 1;
+		for (int j = 1; j < row.length; j++) {
+			int cost = query[j - 1] == c ? row[j - 1] : row[j - 1] + 1;
+			next[j] = Math.min(cost, Math.min(row[j], next[j - 1]) + 1);
+		}
+		return next;
+	}
+
+	/**
+	 * Tells whether the characters read so far are within the distance of the query.
+	 *
+	 * @param row Current state
+	 * @return True if the state is accepting
+	 */
+	boolean isMatch(int[] row) {
+		return row[row.length - 1] <= maxEdits;
+	}
+
+	/**
+	 * Tells whether some continuation of the characters read so far can be accepted.
+	 *
+	 * @param row Current state
+	 * @return False if no string that starts with the characters read can be accepted
+	 */
+	boolean canMatch(int[] row) {
+		for (int d : row) {
+			if (d <= maxEdits) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether a whole string is accepted, reading it from the start state.
+	 *
+	 * @param term String to read
+	 * @return True if the string is within the distance of the query
+	 */
+	boolean accepts(String term) {
+		int[] row = start();
+		int[] next = new int[row.length];
+		for (int i = 0; i < term.length(); i++) {
+			step(row, term.charAt(i), next);
+			if (!canMatch(next)) {
+				return false;
+			}
+			int[] t = row;
+			row = next;
+			next = t;
+		}
+		return isMatch(row);
+	}
+
+	/**
+	 * Length of a state, which is one more than the length of the query.
+	 *
+	 * @return Number of entries in a state
+	 */
+	int stateLength() {
+		return query.length + 1;
+	}
+}
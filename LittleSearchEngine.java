@@ -2,112 +2,567 @@ package search;
 
 import java.io.*;
 import java.util.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
 
 /**
- * This class encapsulates an occurrence of a keyword in a document. It stores the
- * document name, and the frequency of occurrence in that document. Occurrences are
- * associated with keywords in an index hash table.
- * 
- * 
+ * This class builds an index of keywords. Each keyword maps to a set of documents in
+ * which it occurs, with frequency of occurrence in each document. Once the index is built,
+ * the documents can searched on for keywords.
+ *
  */
-class Occurrence {
+public class LittleSearchEngine {
+	
 	/**
-	 * Document in which a keyword occurs.
+	 * Ways of reading the text of documents.
 	 */
-	String document;
+	public enum ReadStrategy {
+		/**
+		 * Read through a buffered character stream.
+		 */
+		STREAM,
+		
+		/**
+		 * Memory-map the document file and scan the mapped bytes.
+		 */
+		MAPPED,
+		
+		/**
+		 * Memory-map documents of at least MAP_THRESHOLD bytes, stream smaller ones.
+		 */
+		AUTO
+	}
 	
 	/**
-	 * The frequency (number of times) the keyword occurs in the above document.
+	 * Smallest document, in bytes, that is memory-mapped by the AUTO read strategy. Mapping
+	 * a file costs more than reading it when the file is only a few pages long.
 	 */
-	int frequency;
+	public static final long MAP_THRESHOLD = 64 * 1024;
 	
 	/**
-	 * Initializes this occurrence with the given document,frequency pair.
-	 * 
-	 * @param doc Document name
-	 * @param freq Frequency
+	 * Number of candidate documents that top5proximitySearch first takes from the
+	 * occurrence lists before boosting them by proximity.
 	 */
-	public Occurrence(String doc, int freq) {
-		document = doc;
-		frequency = freq;
-	}
+	static final int PROXIMITY_CANDIDATES = 50;
 	
-	/* (non-Javadoc)
-	 * @see java.lang.Object#toString()
+	/**
+	 * Largest region of a document that is mapped at a time.
 	 */
-	public String toString() {
-		return "(" + document + "," + frequency + ")";
-	}
-}
-
-/**
- * This class builds an index of keywords. Each keyword maps to a set of documents in
- * which it occurs, with frequency of occurrence in each document. Once the index is built,
- * the documents can searched on for keywords.
- *
- */
-public class LittleSearchEngine {
+	private static final long MAP_REGION = 1L << 30;
 	
 	/**
 	 * This is a hash table of all keywords. The key is the actual keyword, and the associated value is
 	 * an array list of all occurrences of the keyword in documents. The array list is maintained in descending
 	 * order of occurrence frequencies.
 	 */
-	HashMap<String,ArrayList<Occurrence>> keywordsIndex;
+	Map<String,ArrayList<Occurrence>> keywordsIndex;
+	
+	/**
+	 * The hash table of all noise words - mapping is from word to itself. It is only
+	 * changed through addNoiseWord, removeNoiseWord and noiseWordsChanged, so that
+	 * noiseWordSet is always rebuilt.
+	 */
+	private HashMap<String,String> noiseWords;
+	
+	/**
+	 * Set of the words in noiseWords that can be probed without building Strings. It is
+	 * rebuilt whenever words are added to or taken out of noiseWords.
+	 */
+	private volatile NoiseWordSet noiseWordSet;
+	
+	/**
+	 * Number of times noiseWords has changed, incremented after noiseWordSet is rebuilt.
+	 */
+	private volatile int noiseWordChanges;
+	
+	/**
+	 * Cache of the keywords of raw tokens, made for the current noiseWordSet, or null if
+	 * it has not been made yet or tokens are not cached.
+	 */
+	private volatile KeywordCache keywordCache;
+	
+	/**
+	 * Largest number of tokens in keywordCache, or 0 if tokens are not cached.
+	 */
+	private volatile int keywordCacheSize;
+	
+	/**
+	 * The keywords of each indexed document, keyed by document name, or null if this 
+	 * engine does not keep them (see setForwardIndex). The Occurrence objects are the
+	 * ones held in keywordsIndex, so that a document can be taken out of the index
+	 * without scanning any other document.
+	 */
+	Map<String,HashMap<String,Occurrence>> documentKeywords;
+	
+	/**
+	 * The keywords of each indexed document, with its Occurrences of them, keyed by
+	 * document name, so that a document can be taken out of the index without scanning
+	 * any other document. Unlike documentKeywords, it is always kept, in two arrays per
+	 * document. It is null in a snapshot, which is never changed.
+	 */
+	private HashMap<String,DocumentTerms> documentTerms;
+	
+	/**
+	 * Each key of keywordsIndex mapped to itself, so that the keyword arrays of all the
+	 * documents share the one String of a keyword, rather than each keeping the String
+	 * it was scanned into. It is null in a snapshot.
+	 */
+	private HashMap<String,String> keywordNames;
+	
+	/**
+	 * Integer ids of all indexed documents.
+	 */
+	DocumentTable documents;
+	
+	/**
+	 * Document-ordered views of occurrence lists, made when a query first needs them. A
+	 * keyword's view is dropped whenever its occurrence list changes. Successive snapshots
+	 * share one table of views, and a view is only used for the list it was made from.
+	 */
+	private ConcurrentHashMap<String,DocOrderedPostings> docOrderedPostings;
+	
+	/**
+	 * Largest number of keywords added to or taken out of keywordsIndex since sortedTerms
+	 * was built that are kept aside in addedTerms and removedTerms. Past it, sortedTerms
+	 * is dropped, to be built again when a query needs it.
+	 */
+	static final int SORTED_TERMS_CHANGES = 256;
+	
+	/**
+	 * The keywords of keywordsIndex in sorted order, for prefix queries, as they were when
+	 * it was built, at the end of makeIndex or by the first query that needed it. The 
+	 * keywords added or taken out since then are in addedTerms and removedTerms, and
+	 * queries merge them with those found in it.
+	 */
+	private volatile SortedTermDictionary sortedTerms;
+	
+	/**
+	 * Keywords of keywordsIndex that are not in sortedTerms, in sorted order. It is empty
+	 * if sortedTerms is null.
+	 */
+	private TreeSet<String> addedTerms;
+	
+	/**
+	 * Keywords of sortedTerms that are no longer in keywordsIndex. It is empty if 
+	 * sortedTerms is null.
+	 */
+	private HashSet<String> removedTerms;
 	
 	/**
-	 * The hash table of all noise words - mapping is from word to itself.
+	 * Version of the index, incremented whenever documents are merged into or taken out
+	 * of it, so cached results can tell that they are stale.
 	 */
-	HashMap<String,String> noiseWords;
+	private long version;
+	
+	/**
+	 * Cache of top5search results, or null if results are not cached.
+	 */
+	private QueryCache queryCache;
+	
+	/**
+	 * Last published read-only copy of the index, for searches that run while this
+	 * engine is indexing, or null if no snapshot has been asked for. A snapshot's own
+	 * snapshot is itself.
+	 */
+	private volatile LittleSearchEngine snapshot;
+	
+	/**
+	 * Keywords whose occurrence lists have changed since the last snapshot, or null if
+	 * this engine is a snapshot.
+	 */
+	private HashSet<String> changedKeywords;
+	
+	/**
+	 * Documents merged or removed since the last snapshot, or null if this engine is
+	 * a snapshot.
+	 */
+	private HashSet<String> changedDocuments;
+	
+	/**
+	 * True if the next snapshot must copy the whole index, rather than changed lists.
+	 */
+	private boolean changedAll;
+	
+	/**
+	 * Length of each indexed document in keywords, for scoring models.
+	 */
+	DocumentNorms norms;
+	
+	/**
+	 * How the text of documents is read by loadKeyWords.
+	 */
+	ReadStrategy readStrategy;
+	
+	/**
+	 * True if loadKeyWords records the positions of keywords, in PositionalOccurrences,
+	 * for phrase queries.
+	 */
+	boolean positional;
 	
 	/**
 	 * Creates the keyWordsIndex and noiseWords hash tables.
 	 */
 	public LittleSearchEngine() {
+		this(ReadStrategy.AUTO);
+	}
+	
+	/**
+	 * Creates the keyWordsIndex and noiseWords hash tables, for an engine that reads
+	 * documents with the given strategy.
+	 * 
+	 * @param readStrategy How the text of documents is read
+	 */
+	public LittleSearchEngine(ReadStrategy readStrategy) {
+		this(readStrategy, false);
+	}
+	
+	/**
+	 * Creates the keyWordsIndex and noiseWords hash tables, for an engine that reads
+	 * documents with the given strategy, and records the positions of keywords if asked to.
+	 * 
+	 * @param readStrategy How the text of documents is read
+	 * @param positional True to record keyword positions, for phraseSearch
+	 */
+	public LittleSearchEngine(ReadStrategy readStrategy, boolean positional) {
 		keywordsIndex = new HashMap<String,ArrayList<Occurrence>>(1000,2.0f);
 		noiseWords = new HashMap<String,String>(100,2.0f);
+		noiseWordSet = new NoiseWordSet(noiseWords.keySet());
+		documents = new DocumentTable();
+		docOrderedPostings = new ConcurrentHashMap<String,DocOrderedPostings>();
+		norms = new DocumentNorms();
+		documentTerms = new HashMap<String,DocumentTerms>();
+		keywordNames = new HashMap<String,String>(1000, 2.0f);
+		addedTerms = new TreeSet<String>();
+		removedTerms = new HashSet<String>();
+		this.readStrategy = readStrategy;
+		this.positional = positional;
+		changedKeywords = new HashSet<String>();
+		changedDocuments = new HashSet<String>();
+	}
+	
+	/**
+	 * Creates a read-only snapshot of a writer engine's index. The keyword and document
+	 * tables of a snapshot are SnapshotMaps, which share the occurrence lists and document
+	 * keyword tables that have not changed since the previous snapshot with it; changed 
+	 * lists are copied from the writer. The noise words, document ids and lengths are
+	 * shared with the writer or the previous snapshot rather than copied.
+	 * 
+	 * @param writer Engine whose index is copied
+	 * @param previous Previous snapshot of the writer, or null to copy every list
+	 */
+	private LittleSearchEngine(LittleSearchEngine writer, LittleSearchEngine previous) {
+		readStrategy = writer.readStrategy;
+		positional = writer.positional;
+		if (previous == null || writer.changedAll) {
+			HashMap<String,ArrayList<Occurrence>> lists = 
+					new HashMap<String,ArrayList<Occurrence>>(writer.keywordsIndex.size() * 2, 2.0f);
+			for (Map.Entry<String,ArrayList<Occurrence>> e : writer.keywordsIndex.entrySet()) {
+				lists.put(e.getKey(), new ArrayList<Occurrence>(e.getValue()));
+			}
+			keywordsIndex = new SnapshotMap<String,ArrayList<Occurrence>>(lists);
+			if (writer.documentKeywords != null) {
+				documentKeywords = new SnapshotMap<String,HashMap<String,Occurrence>>(writer.documentKeywords);
+			}
+			documents = new DocumentTable(writer.documents, null, null);
+			// shared by the snapshots that follow, whose views are checked against their lists
+			docOrderedPostings = new ConcurrentHashMap<String,DocOrderedPostings>();
+		} else {
+			HashMap<String,ArrayList<Occurrence>> lists = new HashMap<String,ArrayList<Occurrence>>();
+			for (String keyword : writer.changedKeywords) {
+				ArrayList<Occurrence> occs = writer.keywordsIndex.get(keyword);
+				lists.put(keyword, occs == null ? null : new ArrayList<Occurrence>(occs));
+			}
+			keywordsIndex = ((SnapshotMap<String,ArrayList<Occurrence>>)previous.keywordsIndex).with(lists);
+			// document keyword tables are not changed once merged, so they are shared
+			if (writer.documentKeywords != null) {
+				HashMap<String,HashMap<String,Occurrence>> kws = new HashMap<String,HashMap<String,Occurrence>>();
+				for (String docFile : writer.changedDocuments) {
+					kws.put(docFile, writer.documentKeywords.get(docFile));
+				}
+				documentKeywords = ((SnapshotMap<String,HashMap<String,Occurrence>>)previous.documentKeywords).with(kws);
+			}
+			documents = new DocumentTable(writer.documents, previous.documents, writer.changedDocuments);
+			docOrderedPostings = previous.docOrderedPostings;
+			for (String keyword : writer.changedKeywords) {
+				docOrderedPostings.remove(keyword);
+			}
+		}
+		if (previous != null && previous.noiseWordChanges == writer.noiseWordChanges) {
+			noiseWords = previous.noiseWords;
+		} else {
+			noiseWords = new HashMap<String,String>(writer.noiseWords);
+		}
+		noiseWordSet = writer.noiseWordSet;
+		noiseWordChanges = writer.noiseWordChanges;
+		// the changes since sortedTerms was built are few, and copied so that they stay as they are
+		sortedTerms = writer.sortedTerms;
+		addedTerms = new TreeSet<String>(writer.addedTerms);
+		removedTerms = new HashSet<String>(writer.removedTerms);
+		norms = new DocumentNorms(writer.norms);
+		version = writer.version;
+		queryCache = writer.queryCache;
+		keywordCacheSize = writer.keywordCacheSize;
+		snapshot = this;
 	}
 	
 	/**
 	 * This method indexes all keywords found in all the input documents. When this
 	 * method is done, the keywordsIndex hash table will be filled with all keywords,
 	 * each of which is associated with an array list of Occurrence objects, arranged
-	 * in decreasing frequencies of occurrence.
+	 * in decreasing frequencies of occurrence. Occurrences are appended to the lists as
+	 * documents are merged, and each list is sorted once all documents are merged. A
+	 * document that is listed more than once, or is already in the index, is indexed
+	 * once; updateDocument re-indexes a document that has changed.
 	 * 
 	 * @param docsFile Name of file that has a list of all the document file names, one name per line
 	 * @param noiseWordsFile Name of file that has a list of noise words, one noise word per line
 	 * @throws FileNotFoundException If there is a problem locating any of the input files on disk
 	 */
-	public void makeIndex(String docsFile, String noiseWordsFile) 
+	public synchronized void makeIndex(String docsFile, String noiseWordsFile) 
 	throws FileNotFoundException {
+		checkWritable();
 		// load noise words to hash table
+		loadNoiseWords(noiseWordsFile);
+		changedAll = true;
+		
+		// index all keywords, appending occurrences, and order them once at the end
+		Scanner sc = new Scanner(new File(docsFile));
+		try {
+			while (sc.hasNext()) {
+				String docFile = sc.next();
+				if (documents.id(docFile) >= 0) {
+					continue;
+				}
+				HashMap<String,Occurrence> kws = loadKeyWords(docFile);
+				mergeKeyWords(kws, false);
+			}
+		} finally {
+			sc.close();
+			sortOccurrences();
+			sortTerms();
+			publish();
+		}
+	}
+	
+	/**
+	 * Parallel version of makeIndex. Documents are scanned by loadKeyWords on a pool of
+	 * worker threads, each producing the keyword table (partial index) of its document.
+	 * The partial indexes are merged into keywordsIndex on the calling thread, in the
+	 * order in which the documents are listed in the docs file, so the resulting index is
+	 * identical to the one built by makeIndex(docsFile, noiseWordsFile).
+	 * 
+	 * @param docsFile Name of file that has a list of all the document file names, one name per line
+	 * @param noiseWordsFile Name of file that has a list of noise words, one noise word per line
+	 * @param threads Number of worker threads; 1 or less indexes on the calling thread
+	 * @throws FileNotFoundException If there is a problem locating any of the input files on disk
+	 */
+	public synchronized void makeIndex(String docsFile, String noiseWordsFile, int threads)
+	throws FileNotFoundException {
+		if (threads <= 1) {
+			makeIndex(docsFile, noiseWordsFile);
+			return;
+		}
+		checkWritable();
+		loadNoiseWords(noiseWordsFile);
+		changedAll = true;
+		
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			// keep a bounded window of documents in flight, so that partial indexes of
+			// documents that are not yet merged do not pile up in memory
+			ArrayDeque<Future<HashMap<String,Occurrence>>> pending = 
+				new ArrayDeque<Future<HashMap<String,Occurrence>>>();
+			HashSet<String> listed = new HashSet<String>();
+			Scanner sc = new Scanner(new File(docsFile));
+			try {
+				while (sc.hasNext()) {
+					final String docFile = sc.next();
+					if (!listed.add(docFile) || documents.id(docFile) >= 0) {
+						continue;
+					}
+					pending.add(pool.submit(new Callable<HashMap<String,Occurrence>>() {
+						public HashMap<String,Occurrence> call() throws FileNotFoundException {
+							return loadKeyWords(docFile);
+						}
+					}));
+					if (pending.size() >= threads * 4) {
+						mergeKeyWords(await(pending.remove()), false);
+					}
+				}
+			} finally {
+				sc.close();
+			}
+			while (!pending.isEmpty()) {
+				mergeKeyWords(await(pending.remove()), false);
+			}
+		} finally {
+			pool.shutdownNow();
+			sortOccurrences();
+			sortTerms();
+			publish();
+		}
+	}
+	
+	/**
+	 * Waits for a document scanned by a worker thread in the parallel makeIndex.
+	 * 
+	 * @param doc Pending keyword table of a document
+	 * @return Keyword table of the document
+	 * @throws FileNotFoundException If the document file was not found on disk
+	 */
+	private static HashMap<String,Occurrence> await(Future<HashMap<String,Occurrence>> doc)
+	throws FileNotFoundException {
+		try {
+			return doc.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while indexing", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof FileNotFoundException) {
+				throw (FileNotFoundException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+	
+	/**
+	 * Loads noise words into the noiseWords hash table.
+	 * 
+	 * @param noiseWordsFile Name of file that has a list of noise words, one noise word per line
+	 * @throws FileNotFoundException If the noise words file is not found on disk
+	 */
+	private void loadNoiseWords(String noiseWordsFile) 
+	throws FileNotFoundException {
 		Scanner sc = new Scanner(new File(noiseWordsFile));
 		while (sc.hasNext()) {
 			String word = sc.next();
 			noiseWords.put(word,word);
 		}
-		
-		// index all keywords
-		sc = new Scanner(new File(docsFile));
-		while (sc.hasNext()) {
-			String docFile = sc.next();
-			HashMap<String,Occurrence> kws = loadKeyWords(docFile);
-			mergeKeyWords(kws);
+		sc.close();
+		noiseWordsChanged();
+	}
+	
+	/**
+	 * Adds a noise word. Documents indexed afterwards leave it out; documents already
+	 * indexed are not changed.
+	 * 
+	 * @param word Noise word, in lower case
+	 * @throws IllegalStateException If this engine is a snapshot
+	 */
+	public synchronized void addNoiseWord(String word) {
+		checkWritable();
+		if (noiseWords.put(word, word) == null) {
+			noiseWordsChanged();
 		}
-		
-		
+	}
+	
+	/**
+	 * Takes out a noise word. Documents indexed afterwards keep it as a keyword; documents
+	 * already indexed are not changed.
+	 * 
+	 * @param word Noise word, in lower case
+	 * @return True if word was a noise word
+	 * @throws IllegalStateException If this engine is a snapshot
+	 */
+	public synchronized boolean removeNoiseWord(String word) {
+		checkWritable();
+		if (noiseWords.remove(word) == null) {
+			return false;
+		}
+		noiseWordsChanged();
+		return true;
+	}
+	
+	/**
+	 * Tells whether a word is a noise word.
+	 * 
+	 * @param word Word, in lower case
+	 * @return True if word is a noise word
+	 */
+	public boolean isNoiseWord(String word) {
+		return noiseWordSet.contains(word.toCharArray(), word.length());
+	}
+	
+	/**
+	 * Returns the noise words, as a read-only view that follows later changes. It must
+	 * not be iterated while another thread changes the noise words.
+	 * 
+	 * @return Set of all noise words
+	 */
+	public Set<String> getNoiseWords() {
+		return Collections.unmodifiableSet(noiseWords.keySet());
+	}
+	
+	/**
+	 * Rebuilds the set of noise words after the noiseWords hash table has changed, and
+	 * counts the change, so that keywords cached for the old noise words are dropped.
+	 * Must be called by every method that changes noiseWords, while holding the lock.
+	 */
+	private void noiseWordsChanged() {
+		noiseWordSet = new NoiseWordSet(noiseWords.keySet());
+		noiseWordChanges++;
+	}
+	
+	/**
+	 * Returns the set of noise words, as of the last change to the noiseWords hash table.
+	 * 
+	 * @return Set of all noise words
+	 */
+	private NoiseWordSet noiseWordSet() {
+		return noiseWordSet;
+	}
+	
+	/**
+	 * Returns the cache of keywords for the current noise words, making a new, empty one
+	 * if the count of noise word changes has moved on since the cache was made.
+	 * 
+	 * @return Keyword cache, or null if tokens are not cached
+	 */
+	private KeywordCache keywordCache() {
+		int size = keywordCacheSize;
+		if (size == 0) {
+			return null;
+		}
+		// the set is written before the count, so it is at least as new as the count
+		int changes = noiseWordChanges;
+		KeywordCache cache = keywordCache;
+		if (cache == null || cache.noiseWordChanges != changes) {
+			cache = new KeywordCache(size, noiseWordSet(), changes);
+			keywordCache = cache;
+		}
+		return cache;
+	}
+	
+	/**
+	 * Makes getKeyWord and loadKeyWords remember the keywords of up to the given number
+	 * of raw tokens, including tokens that are not keywords, so that a token seen again
+	 * is not stripped, lowercased and checked against the noise words again. The cache
+	 * can be shared by the threads of the parallel makeIndex, and is emptied whenever
+	 * the noise words change.
+	 * 
+	 * @param size Largest number of cached tokens, or 0 to stop caching
+	 * @throws IllegalArgumentException If size is negative
+	 */
+	public void setKeywordCacheSize(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size must not be negative: " + size);
+		}
+		keywordCacheSize = size;
+		keywordCache = null;
 	}
 	
 	public static void main(String[] args) throws FileNotFoundException
 	{
 		LittleSearchEngine l = new LittleSearchEngine();
-		HashMap<String, String> noiseWords;
-		noiseWords = l.noiseWords;
-
 		Scanner scanner = new Scanner(new File("noisewords.txt"));
 		while(scanner.hasNext()){//fills the noiseword hashmap
 			String word = scanner.next();
-			noiseWords.put(word, word);	
+			l.addNoiseWord(word);
 		}
 		l.makeIndex("docs.txt", "noisewords.txt");
 		scanner.close();
@@ -119,7 +574,11 @@ public class LittleSearchEngine {
 
 	/**
 	 * Scans a document, and loads all keywords found into a hash table of keyword occurrences
-	 * in the document. Uses the getKeyWord method to separate keywords from other words.
+	 * in the document. Keywords are separated from other words with the same rules as
+	 * the getKeyWord method, by a KeywordTokenizer that walks the text of the document once.
+	 * The text is read as set by the read strategy of this engine. If this engine is
+	 * positional, the occurrences are PositionalOccurrences. Memory-mapped documents
+	 * are scanned byte by byte, which assumes an ASCII-compatible encoding such as UTF-8.
 	 * 
 	 * @param docFile Name of the document file to be scanned and loaded
 	 * @return Hash table of keywords in the given document, each associated with an Occurrence object
@@ -127,37 +586,31 @@ public class LittleSearchEngine {
 	 */
 	public HashMap<String,Occurrence> loadKeyWords(String docFile) 
 	throws FileNotFoundException {
-		
-		//edit this
-		HashMap<String,Occurrence> map = new HashMap<String,Occurrence>();
-		Scanner sc = new Scanner(new File(docFile));
-		while (sc.hasNext()) 
-		{
-			String s = sc.nextLine();
-			if (!s.trim().isEmpty() && !(s == null))
-			{	
-				String[] t = s.split(" "); 
-				for (int i = 0; i < t.length; i++)
-				{
-					String word = getKeyWord(t[i]);
-					if (word != null) //
-					{
-						if (map.containsKey(word))
-						{
-							Occurrence temp = map.get(word);
-							temp.frequency++; 
-							map.put(word, temp); 
-						}
-						else
-						{
-							Occurrence occ = new Occurrence (docFile, 1); 
-							map.put(word, occ); 
-						}
-					}		
+		KeywordTokenizer tokenizer = new KeywordTokenizer(noiseWordSet(), keywordCache(), positional);
+		RandomAccessFile file = new RandomAccessFile(docFile, "r");
+		try {
+			long size = file.length();
+			if (readStrategy == ReadStrategy.MAPPED 
+					|| (readStrategy == ReadStrategy.AUTO && size >= MAP_THRESHOLD)) {
+				FileChannel channel = file.getChannel();
+				for (long pos = 0; pos < size; pos += MAP_REGION) {
+					tokenizer.scan(channel.map(FileChannel.MapMode.READ_ONLY, pos, 
+							Math.min(MAP_REGION, size - pos)));
 				}
+			} else {
+				tokenizer.scan(new BufferedReader(new InputStreamReader(
+						new FileInputStream(file.getFD()))));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// nothing was written, so there is nothing to lose
 			}
 		}
-		return map; 	
+		return tokenizer.finish(docFile);
 	}
 	
 	/**
@@ -165,131 +618,691 @@ public class LittleSearchEngine {
 	 * hash table. For each keyword, its Occurrence in the current document
 	 * must be inserted in the correct place (according to descending order of
 	 * frequency) in the same keyword's Occurrence list in the master hash table. 
-	 * This is done by calling the insertLastOccurrence method.
+	 * This is done by calling the insertLastOccurrence method. If the document is
+	 * already in the index, its old keywords are taken out first, as by updateDocument.
 	 * 
 	 * @param kws Keywords hash table for a document
 	 */
-	public void mergeKeyWords(HashMap<String,Occurrence> kws) {
-		
-		ArrayList<Occurrence> l = new ArrayList<Occurrence>();
-		String lKey;
-		
-		for(String key: kws.keySet())
-		{
-			Occurrence k = kws.get(key);
-			
-			if (keywordsIndex.containsKey(key) == false)
-			{
-				ArrayList<Occurrence> l2 = new ArrayList<Occurrence>();
-				l2.add(k);
-				keywordsIndex.put(key, l2);
-			}
-			else
-			{
-				keywordsIndex.get(key).add(k);
-				insertLastOccurrence(keywordsIndex.get(key));	
-			}				
+	public synchronized void mergeKeyWords(HashMap<String,Occurrence> kws) {
+		checkWritable();
+		if (!kws.isEmpty()) {
+			unindex(kws.values().iterator().next().document);
 		}
-		
+		mergeKeyWords(kws, true);
+		publish();
 	}
 	
 	/**
-	 * Given a word, returns it as a keyword if it passes the keyword test,
-	 * otherwise returns null. A keyword is any word that, after being stripped of any
-	 * TRAILING punctuation, consists only of alphabetic letters, and is not
-	 * a noise word. All words are treated in a case-INsensitive manner.
-	 * 
-	 * Punctuation characters are the following: '.', ',', '?', ':', ';' and '!'
+	 * Merges the keywords for a single document into the master keywordsIndex hash table.
+	 * When building the whole index, occurrences are only appended to the keywords' 
+	 * lists, and each list is sorted once all documents are merged (see sortOccurrences).
+	 * The document must not be in the index.
 	 * 
-	 * @param word Candidate word
-	 * @return Keyword (word without trailing punctuation, LOWER CASE)
+	 * @param kws Keywords hash table for a document
+	 * @param ordered True to insert each occurrence in its place, false to append it
 	 */
-	public String getKeyWord(String word) {
+	private void mergeKeyWords(HashMap<String,Occurrence> kws, boolean ordered) {
 		
-		String newWord = word.replaceAll("[^a-zA-Z]+$", "").toLowerCase();
-		//System.out.println(newWord);
-		char[] chars = newWord.toCharArray();
-		
-		for (char c : chars) 
-		{
-	        if(!Character.isLetter(c)) 
-	        {
-	            return null;
-	        }
-	    }
-		
-		for (String key : noiseWords.keySet())
-		{
-			if (key.equals(newWord))
-				return null;
+		if (kws.isEmpty()) {
+			return;
+		}
+		String docFile = kws.values().iterator().next().document;
+		version++;
+		if (documentKeywords != null) {
+			documentKeywords.put(docFile, kws);
+		}
+		norms.add(documents.add(docFile), length(kws));
+		if (snapshot != null && !changedAll) {
+			changedDocuments.add(docFile);
+			changedKeywords.addAll(kws.keySet());
 		}
-		//System.out.println("The word is not a noise word and contains all alphabetical letters");
-		//System.out.println(newWord);
-		return newWord;
 		
+		DocumentTerms terms = new DocumentTerms(kws.size());
+		for (Map.Entry<String,Occurrence> e : kws.entrySet()) {
+			ArrayList<Occurrence> occs = keywordsIndex.get(e.getKey());
+			if (occs == null) {
+				occs = new ArrayList<Occurrence>(2);
+				keywordsIndex.put(e.getKey(), occs);
+				keywordNames.put(e.getKey(), e.getKey());
+				termAdded(e.getKey());
+			}
+			occs.add(e.getValue());
+			if (ordered) {
+				insertLastOccurrence(occs, null);
+			}
+			docOrderedPostings.remove(e.getKey());
+			terms.add(keywordNames.get(e.getKey()), e.getValue());
+		}
+		documentTerms.put(docFile, terms);
 	}
 	
 	/**
-	 * Inserts the last occurrence in the parameter list in the correct position in the
-	 * same list, based on ordering occurrences on descending frequencies. The elements
-	 * 0..n-2 in the list are already in the correct order. Insertion of the last element
-	 * (the one at index n-1) is done by first finding the correct spot using binary search, 
-	 * then inserting at that spot.
-	 * 
-	 * @param occs List of Occurrences
-	 * @return Sequence of mid point indexes in the input list checked by the binary search process,
-	 *         null if the size of the input list is 1. This returned array list is only used to test
-	 *         your code - it is not used elsewhere in the program.
+	 * Sorts every occurrence list of keywordsIndex in descending order of frequencies,
+	 * after documents have been merged without ordering. The sort is stable, so
+	 * occurrences with the same frequency stay in the order their documents were merged,
+	 * as they would with insertLastOccurrence.
 	 */
-	public ArrayList<Integer> insertLastOccurrence(ArrayList<Occurrence> occs) {
-	
-		ArrayList<Integer> arr = new ArrayList<Integer>();
-		
-		if (occs.size() == 1)
-		{
-			return null;
-		}
-		int val = occs.get(occs.size() - 1).frequency;
-		
-		for (int i = 0; i < occs.size() - 1; i++)
-		{
-			arr.add(occs.get(i).frequency);
+	private void sortOccurrences() {
+		for (ArrayList<Occurrence> occs : keywordsIndex.values()) {
+			Collections.sort(occs, DESCENDING_FREQUENCY);
 		}
-		ArrayList<Integer> res = new ArrayList<Integer>();
-		res = binary(arr, occs, val, 0, arr.size() - 1);
-		if (res.size() > 0)
-		{
-			int loc = res.get(res.size() - 1);
-			occs.add(loc, occs.remove(occs.size() - 1));
+	}
+	
+	/**
+	 * Orders occurrences by descending frequency.
+	 */
+	private static final Comparator<Occurrence> DESCENDING_FREQUENCY = new Comparator<Occurrence>() {
+		public int compare(Occurrence o1, Occurrence o2) {
+			return Integer.compare(o2.frequency, o1.frequency);
 		}
-		return res;
+	};
+	
+	/**
+	 * Adds a document to the index. The document is scanned with loadKeyWords, and its
+	 * keywords are merged into keywordsIndex, without scanning any other document. If the
+	 * document is already indexed, it is updated as by updateDocument.
+	 * 
+	 * @param docFile Name of the document file to be added
+	 * @throws FileNotFoundException If the document file is not found on disk
+	 */
+	public void addDocument(String docFile) 
+	throws FileNotFoundException {
+		updateDocument(docFile);
 	}
 	
-	private ArrayList<Integer> binary(ArrayList<Integer> arr, ArrayList<Occurrence> occs, int key, int min, int max)
-	{
-	  ArrayList<Integer> mid = new ArrayList<Integer>(); 
-	  while (max >= min)
-	  {
-	      int imid = (min + max) / 2;
-	      Occurrence o = occs.get(imid);
-	      int end = o.frequency;
-	      mid.add(imid); 
-	      if (end < key)
-	        max = imid - 1;
-	      else if (end > key)
-	      {
-	        min = imid + 1;
-	        imid++;
-	      }
-	      else
-	    	  break; 
-	      
-	  }
-	  return mid; 
+	/**
+	 * Removes a document from the index. Each of its keywords loses the document's Occurrence,
+	 * and keywords that occur in no other document are taken out of keywordsIndex. The
+	 * document's keywords are kept from when it was indexed, so the work done is 
+	 * proportional to the number of keywords in the document, and for each of them, to
+	 * the number of documents it occurs in; no other document is scanned.
+	 * 
+	 * @param docFile Name of the document file to be removed
+	 * @return True if the document was in the index, false otherwise
+	 */
+	public synchronized boolean removeDocument(String docFile) {
+		checkWritable();
+		if (!unindex(docFile)) {
+			return false;
+		}
+		publish();
+		return true;
 	}
 	
 	/**
-	 * Search result for "kw1 or kw2". A document is in the result set if kw1 or kw2 occurs in that
+	 * Sets whether this engine keeps a forward index: the keywords hash table of each
+	 * indexed document (documentKeywords). With it, thresholdSearch, phraseSearch and
+	 * top5proximitySearch find a keyword's Occurrence in a document with two hash
+	 * lookups; without it, they look up Occurrences in the document-ordered views of 
+	 * the lists. removeDocument and updateDocument take time in proportion to the size
+	 * of the document either way. The forward index costs about as much heap as the
+	 * occurrence lists, so it is not kept unless asked for. Turning it on builds it from
+	 * keywordsIndex.
+	 * 
+	 * @param keep True to keep a forward index, false to drop it
+	 * @throws IllegalStateException If this engine is a snapshot
+	 */
+	public synchronized void setForwardIndex(boolean keep) {
+		checkWritable();
+		if (keep == (documentKeywords != null)) {
+			return;
+		}
+		documentKeywords = keep ? forwardIndex() : null;
+		changedAll = true;
+		publish();
+	}
+	
+	/**
+	 * Takes a document out of the index, as removeDocument does, without publishing
+	 * a snapshot.
+	 * 
+	 * @param docFile Name of the document file to be removed
+	 * @return True if the document was in the index, false otherwise
+	 */
+	private boolean unindex(String docFile) {
+		if (documents.id(docFile) < 0) {
+			return false;
+		}
+		DocumentTerms terms = documentTerms.remove(docFile);
+		if (documentKeywords != null) {
+			documentKeywords.remove(docFile);
+		}
+		version++;
+		if (snapshot != null && !changedAll) {
+			changedDocuments.add(docFile);
+			changedKeywords.addAll(Arrays.asList(terms.keywords));
+		}
+		long length = 0;
+		for (int i = 0; i < terms.keywords.length; i++) {
+			String keyword = terms.keywords[i];
+			ArrayList<Occurrence> occs = keywordsIndex.get(keyword);
+			occs.remove(indexOf(occs, terms.occurrences[i]));
+			length += terms.occurrences[i].frequency;
+			if (occs.isEmpty()) {
+				keywordsIndex.remove(keyword);
+				keywordNames.remove(keyword);
+				termRemoved(keyword);
+			}
+			docOrderedPostings.remove(keyword);
+		}
+		norms.remove(documents.remove(docFile), length);
+		return true;
+	}
+	
+	/**
+	 * Re-indexes a document whose contents have changed, or adds it if it is not in the index.
+	 * The document is scanned before the index is changed, so if it cannot be read the 
+	 * index is left as it was.
+	 * 
+	 * @param docFile Name of the document file to be updated
+	 * @throws FileNotFoundException If the document file is not found on disk
+	 */
+	public synchronized void updateDocument(String docFile) 
+	throws FileNotFoundException {
+		checkWritable();
+		HashMap<String,Occurrence> kws = loadKeyWords(docFile);
+		unindex(docFile);
+		mergeKeyWords(kws, true);
+		publish();
+	}
+	
+	/**
+	 * Merges all the documents of a concurrent keyword index into this engine's index,
+	 * and empties the concurrent index. Its occurrence lists are already in descending
+	 * order of frequency, so they are adopted as they are, without being copied, for
+	 * keywords that are not in this index yet, and are merged after the occurrences
+	 * of the same frequency otherwise. Documents that are in both indexes are replaced
+	 * by those of the concurrent index. It must be called once threads have stopped
+	 * merging into the concurrent index.
+	 * 
+	 * @param index Concurrent index filled by ingestion threads
+	 */
+	public synchronized void mergeKeyWords(ConcurrentKeywordIndex index) {
+		checkWritable();
+		changedAll = true;
+		ArrayList<HashMap<String,Occurrence>> docs = new ArrayList<HashMap<String,Occurrence>>();
+		try {
+			for (HashMap<String,Occurrence> kws : index.documents()) {
+				docs.add(kws);
+				String docFile = kws.values().iterator().next().document;
+				unindex(docFile);
+				version++;
+				if (documentKeywords != null) {
+					documentKeywords.put(docFile, kws);
+				}
+				norms.add(documents.add(docFile), length(kws));
+			}
+			for (Map.Entry<String,ArrayList<Occurrence>> e : index.handOver().entrySet()) {
+				ArrayList<Occurrence> occs = keywordsIndex.get(e.getKey());
+				if (occs == null) {
+					keywordsIndex.put(e.getKey(), e.getValue());
+					keywordNames.put(e.getKey(), e.getKey());
+				} else {
+					keywordsIndex.put(e.getKey(), merge(occs, e.getValue()));
+				}
+				docOrderedPostings.remove(e.getKey());
+			}
+			// the documents' arrays share the Strings of the keywords adopted above
+			for (HashMap<String,Occurrence> kws : docs) {
+				DocumentTerms terms = new DocumentTerms(kws.size());
+				for (Map.Entry<String,Occurrence> e : kws.entrySet()) {
+					terms.add(keywordNames.get(e.getKey()), e.getValue());
+				}
+				documentTerms.put(kws.values().iterator().next().document, terms);
+			}
+		} finally {
+			sortTerms();
+			publish();
+		}
+	}
+	
+	/**
+	 * Merges two occurrence lists that are in descending order of frequency into one,
+	 * in which the occurrences of the first list come before those of the second list
+	 * with the same frequency.
+	 * 
+	 * @param l1 First list
+	 * @param l2 Second list
+	 * @return Merged list
+	 */
+	private static ArrayList<Occurrence> merge(ArrayList<Occurrence> l1, ArrayList<Occurrence> l2) {
+		ArrayList<Occurrence> merged = new ArrayList<Occurrence>(l1.size() + l2.size());
+		int i = 0, j = 0;
+		while (i < l1.size() || j < l2.size()) {
+			if (j >= l2.size() || (i < l1.size() && l1.get(i).frequency >= l2.get(j).frequency)) {
+				merged.add(l1.get(i++));
+			} else {
+				merged.add(l2.get(j++));
+			}
+		}
+		return merged;
+	}
+	
+	/**
+	 * Returns a read-only copy of the index, as it was after the last change that was
+	 * completed. Every method that changes the index (makeIndex, mergeKeyWords, 
+	 * addDocument, removeDocument, updateDocument and loadIndex) publishes a new snapshot
+	 * when it is done, so the snapshot never shows a change in progress, such as a 
+	 * document that updateDocument has removed but not yet added again.
+	 * 
+	 * Snapshots can be searched by any number of threads while this engine is indexing,
+	 * without locks, and a search that runs on one snapshot is not affected by later 
+	 * changes. A new snapshot shares the occurrence lists that have not changed with 
+	 * the one before it, and copies the ones that have, so publishing one takes time in
+	 * proportion to the size of the changed lists, plus one reference for every 
+	 * SnapshotMap.BUCKET_SIZE keywords and documents. makeIndex publishes only once, when
+	 * all documents are merged. Methods that change the index throw IllegalStateException
+	 * on a snapshot.
+	 * 
+	 * Snapshots are only published once one has been asked for, so an engine whose 
+	 * snapshot is never used does not pay for them. The methods that change the index
+	 * are synchronized, and the first call of this method waits for any change in
+	 * progress; later calls do not lock.
+	 * 
+	 * @return Latest snapshot of the index
+	 */
+	public LittleSearchEngine snapshot() {
+		LittleSearchEngine s = snapshot;
+		if (s == null) {
+			synchronized (this) {
+				if (snapshot == null) {
+					publish(new LittleSearchEngine(this, null));
+				}
+				s = snapshot;
+			}
+		}
+		return s;
+	}
+	
+	/**
+	 * Publishes a snapshot of the index as it is now, and starts tracking changes from it.
+	 */
+	private void publish() {
+		if (snapshot != null) {
+			publish(new LittleSearchEngine(this, snapshot));
+		}
+	}
+	
+	/**
+	 * Publishes a snapshot, and starts tracking changes from it.
+	 */
+	private void publish(LittleSearchEngine next) {
+		snapshot = next;
+		changedKeywords.clear();
+		changedDocuments.clear();
+		changedAll = false;
+	}
+	
+	/**
+	 * Checks that this engine is not a snapshot, before changing the index.
+	 * 
+	 * @throws IllegalStateException If this engine is a snapshot
+	 */
+	private void checkWritable() {
+		if (snapshot == this) {
+			throw new IllegalStateException("a snapshot is read-only");
+		}
+	}
+	
+	/**
+	 * Makes a read-only copy of the index in which keywords and documents are replaced
+	 * by integer ids, so that its postings are lists of primitive ints. Later changes to
+	 * this engine's index do not show in the copy.
+	 * 
+	 * @return Compact copy of keywordsIndex
+	 */
+	public CompactIndex compactIndex() {
+		return compactIndex(PostingsCodec.RAW);
+	}
+	
+	/**
+	 * Makes a read-only copy of the index in which keywords and documents are replaced
+	 * by integer ids, and the postings of each keyword are stored by the given codec. 
+	 * Occurrences with the same frequency are put in ascending order of document id,
+	 * which is the order in which the documents were first indexed. The copy is made
+	 * while holding the lock of the methods that change the index, so it never shows
+	 * a change in progress; to copy without stopping them, copy a snapshot instead.
+	 * 
+	 * @param codec Storage format of postings
+	 * @return Compact copy of keywordsIndex
+	 */
+	public synchronized CompactIndex compactIndex(PostingsCodec codec) {
+		TermDictionary terms = new TermDictionary(keywordsIndex.size());
+		Postings[] postings = new Postings[keywordsIndex.size()];
+		for (Map.Entry<String,ArrayList<Occurrence>> e : keywordsIndex.entrySet()) {
+			ArrayList<Occurrence> occs = e.getValue();
+			PostingsList p = new PostingsList(occs.size());
+			for (Occurrence occ : occs) {
+				p.append(documents.id(occ.document), occ.frequency);
+			}
+			p.sortRunsByDoc();
+			postings[terms.add(e.getKey())] = codec.encode(p);
+		}
+		return new CompactIndex(terms, new DocumentTable(documents), postings, 
+				noiseWords.keySet().toArray(new String[0]));
+	}
+	
+	/**
+	 * Saves the index, with its documents and noise words, to a segment file, replacing
+	 * the file if it exists. The index can be restored with loadIndex, without scanning
+	 * any document, or opened for search as a CompactIndex with CompactIndex.load. The
+	 * file is replaced atomically, so if saving fails the old file is left as it was.
+	 * The index is copied under the lock of the methods that change it, as by
+	 * compactIndex, but the file is written after the lock is released.
+	 * 
+	 * A segment holds frequencies but no keyword positions, so the index of a positional
+	 * engine cannot be saved: loading it would leave phraseSearch and top5proximitySearch
+	 * without the positions they need.
+	 * 
+	 * @param path Segment file
+	 * @throws IOException If the file could not be written
+	 * @throws IllegalStateException If this engine records keyword positions
+	 */
+	public void saveIndex(Path path) 
+	throws IOException {
+		CompactIndex index;
+		synchronized (this) {
+			if (positional) {
+				throw new IllegalStateException(
+						"segments hold no positions, so a positional index cannot be saved");
+			}
+			index = compactIndex(PostingsCodec.VBYTE);
+		}
+		index.save(path);
+	}
+	
+	/**
+	 * Replaces the index of this engine with the one saved in a segment file by saveIndex.
+	 * The file is memory-mapped, and keywordsIndex is filled from it with the same
+	 * occurrences as when it was saved, without scanning any document. Occurrences with
+	 * the same frequency come back in the order their documents were first indexed. The
+	 * noise words of the segment are added to this engine's. A segment holds no keyword
+	 * positions, so if this engine is positional, it stops recording them, and documents
+	 * indexed afterwards are not positional either.
+	 * 
+	 * An Occurrence is made for every posting, so this takes time in proportion to the
+	 * size of the index, about half a second per million postings. To restart a search
+	 * service in milliseconds, open the segment with CompactIndex.load and search it
+	 * instead, which decodes postings from the mapped file only when they are searched.
+	 * 
+	 * @param path Segment file
+	 * @throws IOException If the file could not be read, or is not a segment file
+	 */
+	public synchronized void loadIndex(Path path) 
+	throws IOException {
+		checkWritable();
+		CompactIndex index = CompactIndex.load(path);
+		version++;
+		changedAll = true;
+		for (String word : index.noiseWords) {
+			noiseWords.put(word, word);
+		}
+		noiseWordsChanged();
+		positional = false;
+		keywordsIndex.clear();
+		keywordNames.clear();
+		docOrderedPostings.clear();
+		norms = new DocumentNorms();
+		documents = new DocumentTable(index.documents);
+		long[] lengths = new long[index.documents.maxId()];
+		for (int t = 0; t < index.size(); t++) {
+			String keyword = index.terms.term(t);
+			ArrayList<Occurrence> occs = new ArrayList<Occurrence>(index.postings[t].size());
+			PostingsCursor c = index.postings[t].cursor();
+			while (c.next()) {
+				occs.add(new Occurrence(index.documents.name(c.doc()), c.frequency()));
+				lengths[c.doc()] += c.frequency();
+			}
+			keywordsIndex.put(keyword, occs);
+			keywordNames.put(keyword, keyword);
+		}
+		for (int id = 0; id < lengths.length; id++) {
+			if (index.documents.name(id) != null) {
+				norms.add(id, lengths[id]);
+			}
+		}
+		documentTerms = documentTerms();
+		if (documentKeywords != null) {
+			documentKeywords = forwardIndex();
+		}
+		sortTerms();
+		publish();
+	}
+	
+	/**
+	 * Length of a document, as the number of keywords in it.
+	 * 
+	 * @param kws Keywords hash table for a document
+	 * @return Sum of the frequencies of the keywords
+	 */
+	private static long length(HashMap<String,Occurrence> kws) {
+		long length = 0;
+		for (Occurrence occ : kws.values()) {
+			length += occ.frequency;
+		}
+		return length;
+	}
+	
+	/**
+	 * Builds the keywords hash table of every indexed document from keywordsIndex.
+	 * 
+	 * @return Keywords hash tables of documents, keyed by document name
+	 */
+	private HashMap<String,HashMap<String,Occurrence>> forwardIndex() {
+		HashMap<String,HashMap<String,Occurrence>> forward = 
+				new HashMap<String,HashMap<String,Occurrence>>(documents.size() * 2);
+		for (Map.Entry<String,ArrayList<Occurrence>> e : keywordsIndex.entrySet()) {
+			for (Occurrence occ : e.getValue()) {
+				HashMap<String,Occurrence> kws = forward.get(occ.document);
+				if (kws == null) {
+					kws = new HashMap<String,Occurrence>();
+					forward.put(occ.document, kws);
+				}
+				kws.put(e.getKey(), occ);
+			}
+		}
+		return forward;
+	}
+	
+	/**
+	 * Builds the keyword arrays of every indexed document from keywordsIndex.
+	 * 
+	 * @return Keywords and Occurrences of documents, keyed by document name
+	 */
+	private HashMap<String,DocumentTerms> documentTerms() {
+		int[] counts = new int[documents.maxId()];
+		for (ArrayList<Occurrence> occs : keywordsIndex.values()) {
+			for (Occurrence occ : occs) {
+				counts[documents.id(occ.document)]++;
+			}
+		}
+		DocumentTerms[] terms = new DocumentTerms[counts.length];
+		for (Map.Entry<String,ArrayList<Occurrence>> e : keywordsIndex.entrySet()) {
+			for (Occurrence occ : e.getValue()) {
+				int id = documents.id(occ.document);
+				if (terms[id] == null) {
+					terms[id] = new DocumentTerms(counts[id]);
+				}
+				terms[id].add(e.getKey(), occ);
+			}
+		}
+		HashMap<String,DocumentTerms> byName = new HashMap<String,DocumentTerms>(documents.size() * 2);
+		for (int id = 0; id < terms.length; id++) {
+			if (terms[id] != null) {
+				byName.put(documents.name(id), terms[id]);
+			}
+		}
+		return byName;
+	}
+	
+	/**
+	 * Finds the Occurrence of a keyword in a document, in the forward index if this
+	 * engine keeps one, or else in the document-ordered view of the keyword's list.
+	 * 
+	 * @param keyword Keyword, in lower case
+	 * @param docFile Document name
+	 * @return Occurrence, or null if the keyword does not occur in the document
+	 */
+	private Occurrence occurrence(String keyword, String docFile) {
+		if (documentKeywords != null) {
+			HashMap<String,Occurrence> kws = documentKeywords.get(docFile);
+			return kws == null ? null : kws.get(keyword);
+		}
+		DocOrderedPostings view = docOrdered(keyword);
+		return view == null ? null : view.occurrence(documents.id(docFile));
+	}
+	
+	/**
+	 * Finds an occurrence in an occurrence list that is in descending order of frequencies.
+	 * The occurrences with the same frequency are found by binary search, and then
+	 * searched for the one that is the given object.
+	 * 
+	 * @param occs List of Occurrences
+	 * @param occ Occurrence that is in the list
+	 * @return Index of occ in occs
+	 */
+	private static int indexOf(ArrayList<Occurrence> occs, Occurrence occ) {
+		int lo = 0, hi = occs.size() - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int f = occs.get(mid).frequency;
+			if (f > occ.frequency) {
+				lo = mid + 1;
+			} else if (f < occ.frequency) {
+				hi = mid - 1;
+			} else {
+				for (int i = mid; i >= 0 && occs.get(i).frequency == f; i--) {
+					if (occs.get(i) == occ) {
+						return i;
+					}
+				}
+				for (int i = mid + 1; i < occs.size() && occs.get(i).frequency == f; i++) {
+					if (occs.get(i) == occ) {
+						return i;
+					}
+				}
+				break;
+			}
+		}
+		throw new IllegalStateException("Occurrence " + occ + " is not in the index");
+	}
+	
+	/**
+	 * Given a word, returns it as a keyword if it passes the keyword test,
+	 * otherwise returns null. A keyword is any word that, after being stripped of any
+	 * TRAILING punctuation, consists only of alphabetic letters, and is not
+	 * a noise word. All words are treated in a case-INsensitive manner.
+	 * 
+	 * Punctuation characters are the following: '.', ',', '?', ':', ';' and '!'
+	 * 
+	 * Alphabetic letters are the ASCII letters 'a' to 'z' and 'A' to 'Z', so a word 
+	 * with any other letter, such as an accented one, is not a keyword. Memory-mapped
+	 * documents are scanned byte by byte, where a letter outside ASCII is several bytes
+	 * of UTF-8, so this rule keeps the keywords of a document the same however it is read.
+	 * 
+	 * @param word Candidate word
+	 * @return Keyword (word without trailing punctuation, LOWER CASE)
+	 */
+	public String getKeyWord(String word) {
+		char[] chars = word.toCharArray();
+		KeywordCache cache = keywordCache();
+		if (cache != null) {
+			return cache.keyword(chars, chars.length);
+		}
+		int length = KeywordTokenizer.keywordLength(chars, chars.length);
+		if (length < 0) {
+			return null;
+		}
+		if (noiseWordSet().contains(chars, length)) {
+			return null;
+		}
+		return new String(chars, 0, length);
+	}
+	
+	/**
+	 * Inserts the last occurrence in the parameter list in the correct position in the
+	 * same list, based on ordering occurrences on descending frequencies. The elements
+	 * 0..n-2 in the list are already in the correct order. Insertion of the last element
+	 * (the one at index n-1) is done by first finding the correct spot using binary search, 
+	 * then inserting at that spot.
+	 * 
+	 * @param occs List of Occurrences
+	 * @return Sequence of mid point indexes in the input list checked by the binary search process,
+	 *         null if the size of the input list is 1. This returned array list is only used to test
+	 *         your code - it is not used elsewhere in the program.
+	 */
+	public ArrayList<Integer> insertLastOccurrence(ArrayList<Occurrence> occs) {
+		if (occs.size() == 1) {
+			return null;
+		}
+		ArrayList<Integer> trace = new ArrayList<Integer>();
+		insertLastOccurrence(occs, trace);
+		return trace;
+	}
+	
+	/**
+	 * Inserts the last occurrence in the parameter list in the correct position, as
+	 * insertLastOccurrence(occs) does, but only records the mid points checked by the 
+	 * binary search if asked to. The new occurrence goes after those that have the same
+	 * frequency, so ties stay in the order in which they were added.
+	 * 
+	 * @param occs List of Occurrences
+	 * @param trace List to which the mid point indexes are added, or null
+	 */
+	static void insertLastOccurrence(ArrayList<Occurrence> occs, ArrayList<Integer> trace) {
+		int last = occs.size() - 1;
+		int val = occs.get(last).frequency;
+		int lo = 0, hi = last - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (trace != null) {
+				trace.add(mid);
+			}
+			int f = occs.get(mid).frequency;
+			if (f < val) {
+				hi = mid - 1;
+			} else if (f > val) {
+				lo = mid + 1;
+			} else {
+				// found an equal frequency, go past the rest of them without tracing
+				lo = mid + 1;
+				while (lo <= hi) {
+					mid = (lo + hi) >>> 1;
+					if (occs.get(mid).frequency == val) {
+						lo = mid + 1;
+					} else {
+						hi = mid - 1;
+					}
+				}
+				break;
+			}
+		}
+		if (lo < last) {
+			occs.add(lo, occs.remove(last));
+		}
+	}
+	
+	/**
+	 * Makes top5search cache its results in the given cache, or stop caching them. Cached
+	 * results are dropped whenever documents are merged into or taken out of the index.
+	 * 
+	 * @param cache Cache of results, or null to stop caching
+	 */
+	public void setQueryCache(QueryCache cache) {
+		queryCache = cache;
+	}
+	
+	/**
+	 * Returns the cache of top5search results, with its hit, miss and eviction counters.
+	 * 
+	 * @return Cache of results, or null if results are not cached
+	 */
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+	
+	/**
+	 * Search result for "kw1 or kw2". A document is in the result set if kw1 or kw2 occurs in that
 	 * document. Result set is arranged in descending order of occurrence frequencies. (Note that a
 	 * matching document will only appear once in the result.) Ties in frequency values are broken
 	 * in favor of the first keyword. (That is, if kw1 is in doc1 with frequency f1, and kw2 is in doc2
@@ -297,90 +1310,996 @@ public class LittleSearchEngine {
 	 * The result set is limited to 5 entries. If there are no matching documents, the result is null.
 	 * 
 	 * @param kw1 First keyword
-	 * @param kw1 Second keyword
+	 * @param kw2 Second keyword
 	 * @return List of NAMES of documents in which either kw1 or kw2 occurs, arranged in descending order of
 	 *         frequencies. The result size is limited to 5 documents. If there are no matching documents,
 	 *         the result is null.
 	 */
 	public ArrayList<String> top5search(String kw1, String kw2) {
-	
-		
 		kw1 = kw1.toLowerCase();
 		kw2 = kw2.toLowerCase();
+		QueryCache cache = queryCache;
+		if (cache == null) {
+			return top5merge(kw1, kw2);
+		}
 		
-		int totalf1 = 0;
-		int totalf2 = 0;
+		// the pair is ordered, since ties go to kw1
+		List<String> key = Arrays.asList(kw1, kw2);
+		long v = version;
+		ArrayList<String> result = cache.get(key, v);
+		if (result == null) {
+			result = top5merge(kw1, kw2);
+			cache.put(key, v, result == null ? null : new ArrayList<String>(result));
+		} else if (result == QueryCache.NO_RESULT) {
+			result = null;
+		} else {
+			result = new ArrayList<String>(result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Merges the occurrence lists of two lowercase keywords for top5search.
+	 */
+	private ArrayList<String> top5merge(String kw1, String kw2) {
+		return top5merge(keywordsIndex.get(kw1), keywordsIndex.get(kw2));
+	}
+	
+	/**
+	 * Merges two occurrence lists for top5search.
+	 * 
+	 * @param l1 Occurrences of the first keyword, or null if it is not indexed
+	 * @param l2 Occurrences of the second keyword, or null if it is not indexed
+	 * @return Names of the first 5 distinct documents, or null if there are none
+	 */
+	static ArrayList<String> top5merge(ArrayList<Occurrence> l1, ArrayList<Occurrence> l2) {
+		int n1 = l1 == null ? 0 : l1.size();
+		int n2 = l2 == null ? 0 : l2.size();
 		
-		ArrayList<String> result = new ArrayList<String>();
-		ArrayList<Occurrence> l1 = new ArrayList<Occurrence>();
-		ArrayList<Occurrence> l2 = new ArrayList<Occurrence>();
+		// both lists are in descending order of frequency, so merge them front to back,
+		// taking from l1 on ties, until 5 distinct documents are found
+		ArrayList<String> result = new ArrayList<String>(5);
+		HashSet<String> seen = new HashSet<String>();
+		int i = 0, j = 0;
+		while (result.size() < 5 && (i < n1 || j < n2)) {
+			Occurrence occ;
+			if (j >= n2 || (i < n1 && l1.get(i).frequency >= l2.get(j).frequency)) {
+				occ = l1.get(i++);
+			} else {
+				occ = l2.get(j++);
+			}
+			if (seen.add(occ.document)) {
+				result.add(occ.document);
+			}
+		}
 		
-		if (keywordsIndex.get(kw1) != null)
-		{
-			l1 = keywordsIndex.get(kw1);
+		if (result.isEmpty()) {
+			return null;
 		}
-		if (keywordsIndex.get(kw2) != null)
-		{
-			l2 = keywordsIndex.get(kw2);
+		return result;
+	}
+	
+	/**
+	 * Search result for "kw1 or kw2 or ... or kwn", for any number of keywords and any
+	 * result size. A document is in the result set if any of the keywords occurs in it, and
+	 * is ranked by the highest frequency of any of the keywords in it. Ties are broken in
+	 * favor of the keyword that comes first in the list, so topKSearch(Arrays.asList(kw1,kw2),5)
+	 * gives the same result as top5search(kw1,kw2).
+	 * 
+	 * The occurrence lists of the keywords are merged with a priority queue that holds the
+	 * next occurrence of each list, so the queue never holds more entries than there are
+	 * keywords. Since every list is in descending order of frequencies, no occurrence left
+	 * in the lists can rank above the k documents found first, and the merge stops there.
+	 * 
+	 * @param keywords Keywords to search for
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents in which any of the keywords occurs, arranged in
+	 *         descending order of frequencies, at most k of them. If there are no matching
+	 *         documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	public ArrayList<String> topKSearch(List<String> keywords, int k) {
+		checkK(k);
+		PriorityQueue<ListHead> heads = new PriorityQueue<ListHead>(Math.max(keywords.size(), 1));
+		for (int i = 0; i < keywords.size(); i++) {
+			ArrayList<Occurrence> occs = keywordsIndex.get(keywords.get(i).toLowerCase());
+			if (occs != null) {
+				heads.add(new ListHead(occs, i));
+			}
 		}
-		if (l1 == null && l2 == null)
-			return result;
 		
-		//System.out.println(l1.get(0) + " " + l1.get(1));
-		//System.out.println(l2.get(0) + " " + l2.get(1));
-		for(int i = 0; i < l1.size(); i++)
-		{
-			if(result.size() < 5)
-			{
-				int f1 = l1.get(i).frequency;
-				String doc1 = l1.get(i).document;
-				
-				for(int j = 0; j < l2.size(); j++)
-				{
-					int f2 = l2.get(j).frequency;
-					String doc2 = l2.get(j).document;
-					
-					if (f1 >= f2)
-					{
-						if (!result.contains(doc1) && result.size() < 5)
-						{
-							result.add(doc1);
-						}
+		ArrayList<String> result = new ArrayList<String>(Math.min(k, 16));
+		HashSet<String> seen = new HashSet<String>();
+		while (result.size() < k && !heads.isEmpty()) {
+			ListHead head = heads.poll();
+			String doc = head.occs.get(head.pos).document;
+			if (seen.add(doc)) {
+				result.add(doc);
+			}
+			if (++head.pos < head.occs.size()) {
+				heads.add(head);
+			}
+		}
+		
+		if (result.isEmpty()) {
+			return null;
+		}
+		return result;
+	}
+	
+	/**
+	 * Search result for "kw1 or kw2 or ... or kwn" where a document is scored by the SUM of
+	 * the frequencies of all the keywords in it. Documents with the same score are arranged
+	 * in the order in which they were first indexed. When more documents than fit in the
+	 * result tie with the k-th score, which of them are returned depends on how far the
+	 * lists were read.
+	 * 
+	 * This runs Fagin's threshold algorithm over the occurrence lists. The lists are read
+	 * in parallel, one occurrence of each list per round, and each newly seen document 
+	 * gets its full score by looking up its frequency for every keyword (see
+	 * setForwardIndex). The k best documents so far are kept in a bounded priority queue.
+	 * No document that has not been seen can score more than the sum of the frequencies
+	 * last read from each list, so reading stops as soon as the k-th best score reaches
+	 * that sum. When frequencies are skewed, only a short prefix of each list is read.
+	 * 
+	 * @param keywords Keywords to search for
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents in which any of the keywords occurs, arranged in
+	 *         descending order of summed frequencies, at most k of them. If there are no
+	 *         matching documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	public ArrayList<String> thresholdSearch(List<String> keywords, int k) {
+		checkK(k);
+		ArrayList<String> terms = new ArrayList<String>();
+		ArrayList<ArrayList<Occurrence>> lists = new ArrayList<ArrayList<Occurrence>>();
+		for (String keyword : new LinkedHashSet<String>(lowerCase(keywords))) {
+			ArrayList<Occurrence> occs = keywordsIndex.get(keyword);
+			if (occs != null) {
+				terms.add(keyword);
+				lists.add(occs);
+			}
+		}
+		
+		// k best documents so far, the worst at the head
+		PriorityQueue<ScoredDocument> best = bestQueue(k);
+		HashSet<String> seen = new HashSet<String>();
+		for (int depth = 0; ; depth++) {
+			int threshold = 0;
+			boolean more = false;
+			for (ArrayList<Occurrence> occs : lists) {
+				if (depth >= occs.size()) {
+					continue;
+				}
+				more = true;
+				Occurrence occ = occs.get(depth);
+				threshold += occ.frequency;
+				if (!seen.add(occ.document)) {
+					continue;
+				}
+				int score = 0;
+				for (String term : terms) {
+					Occurrence o = occurrence(term, occ.document);
+					if (o != null) {
+						score += o.frequency;
+					}
+				}
+				best.add(new ScoredDocument(occ.document, documents.id(occ.document), score));
+				if (best.size() > k) {
+					best.poll();
+				}
+			}
+			if (!more || (best.size() == k && best.peek().score >= threshold)) {
+				break;
+			}
+		}
+		
+		return ranked(best);
+	}
+	
+	/**
+	 * Search result for "kw1 and kw2 and ... and kwn". A document is in the result set if
+	 * every one of the keywords occurs in it, and is scored by the sum of the frequencies
+	 * of the keywords in it. Documents with the same score are arranged in the order in
+	 * which they were first indexed.
+	 * 
+	 * The documents are found by intersecting document-ordered views of the occurrence
+	 * lists, starting from the shortest list. Each of its documents is looked for in the
+	 * other lists by galloping search from where the previous search ended, so the cost
+	 * is about the length of the shortest list times the log of the gaps skipped in the
+	 * others, and a rare keyword with a common one costs about as much as the rare one.
+	 * 
+	 * @param keywords Keywords that must all occur
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents in which all the keywords occur, arranged in
+	 *         descending order of summed frequencies, at most k of them. If there are no 
+	 *         matching documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	public ArrayList<String> andSearch(List<String> keywords, int k) {
+		checkK(k);
+		LinkedHashSet<String> terms = new LinkedHashSet<String>(lowerCase(keywords));
+		if (terms.isEmpty()) {
+			return null;
+		}
+		DocOrderedPostings[] lists = new DocOrderedPostings[terms.size()];
+		int n = 0;
+		for (String term : terms) {
+			lists[n] = docOrdered(term);
+			if (lists[n] == null) {
+				return null;
+			}
+			n++;
+		}
+		Arrays.sort(lists, new Comparator<DocOrderedPostings>() {
+			public int compare(DocOrderedPostings p1, DocOrderedPostings p2) {
+				return Integer.compare(p1.size(), p2.size());
+			}
+		});
+		
+		PriorityQueue<ScoredDocument> best = bestQueue(k);
+		int[] pos = new int[lists.length];
+		DocOrderedPostings shortest = lists[0];
+		candidates:
+		for (int c = 0; c < shortest.size(); c++) {
+			int doc = shortest.docs[c];
+			int score = shortest.freqs[c];
+			for (int l = 1; l < lists.length; l++) {
+				pos[l] = lists[l].advance(pos[l], doc);
+				if (pos[l] == lists[l].size()) {
+					break candidates;
+				}
+				if (lists[l].docs[pos[l]] != doc) {
+					continue candidates;
+				}
+				score += lists[l].freqs[pos[l]];
+			}
+			best.add(new ScoredDocument(documents.name(doc), doc, score));
+			if (best.size() > k) {
+				best.poll();
+			}
+		}
+		
+		return ranked(best);
+	}
+	
+	/**
+	 * Search result for "kw1 or kw2 or ... or kwn" where a document is scored by the SUM of
+	 * the frequencies of all the keywords in it, as in thresholdSearch. Documents with the
+	 * same score are arranged in the order in which they were first indexed.
+	 * 
+	 * This runs WAND, document at a time, over document-ordered views of the occurrence
+	 * lists. The highest frequency of each keyword bounds what it can add to a score, so
+	 * documents whose keywords cannot add up to more than the k-th best score so far are
+	 * skipped without being scored. Documents are visited in ascending id order, so a 
+	 * document that only ties the k-th score can never enter the result, and the result
+	 * is the same as scoring every document. Block-max WAND, which also bounds each block
+	 * of postings by its highest frequency, skips more documents but does more work per
+	 * document, and is slower on the queries of WandBenchmark, so it is not the default.
+	 * 
+	 * @param keywords Keywords to search for
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents in which any of the keywords occurs, arranged in
+	 *         descending order of summed frequencies, at most k of them. If there are no
+	 *         matching documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	public ArrayList<String> wandSearch(List<String> keywords, int k) {
+		return wandSearch(keywords, k, false);
+	}
+	
+	/**
+	 * Runs wandSearch, with or without block maximums.
+	 * 
+	 * @param keywords Keywords to search for
+	 * @param k Largest number of documents to return
+	 * @param blockMax True for block-max WAND, false for plain WAND
+	 * @return Same as wandSearch
+	 */
+	ArrayList<String> wandSearch(List<String> keywords, int k, boolean blockMax) {
+		checkK(k);
+		ArrayList<DocOrderedPostings> found = new ArrayList<DocOrderedPostings>();
+		for (String term : new LinkedHashSet<String>(lowerCase(keywords))) {
+			DocOrderedPostings p = docOrdered(term);
+			if (p != null) {
+				found.add(p);
+			}
+		}
+		int n = found.size();
+		DocOrderedPostings[] lists = found.toArray(new DocOrderedPostings[n]);
+		// cursor position in each list; terms are kept sorted by current document
+		int[] pos = new int[n];
+		Integer[] order = new Integer[n];
+		for (int t = 0; t < n; t++) {
+			order[t] = t;
+		}
+		
+		PriorityQueue<ScoredDocument> best = bestQueue(k);
+		while (true) {
+			sortByDoc(order, lists, pos);
+			double threshold = best.size() < k ? 0 : best.peek().score;
+			
+			// pivot: first term at which the highest possible score goes over the threshold
+			int p = -1;
+			int bound = 0;
+			for (int i = 0; i < n; i++) {
+				int t = order[i];
+				if (pos[t] == lists[t].size()) {
+					break;
+				}
+				bound += lists[t].maxFreq;
+				if (bound > threshold) {
+					p = i;
+					break;
+				}
+			}
+			if (p < 0) {
+				break;
+			}
+			int pivotDoc = doc(lists, pos, order[p]);
+			while (p + 1 < n && doc(lists, pos, order[p + 1]) == pivotDoc) {
+				p++;
+			}
+			
+			if (blockMax) {
+				// bound the terms up to the pivot by their blocks that can hold pivotDoc
+				int blockBound = 0;
+				int next = Integer.MAX_VALUE;
+				for (int i = 0; i <= p; i++) {
+					int t = order[i];
+					int at = lists[t].advance(pos[t], pivotDoc);
+					if (at < lists[t].size()) {
+						blockBound += lists[t].blockMax[at / DocOrderedPostings.BLOCK_SIZE];
+						next = Math.min(next, lists[t].blockLastDoc(at) + 1);
+					}
+				}
+				if (blockBound <= threshold) {
+					// no document from pivotDoc up to next can go over the threshold
+					if (p + 1 < n) {
+						next = Math.min(next, doc(lists, pos, order[p + 1]));
+					}
+					next = Math.max(next, pivotDoc + 1);
+					for (int i = 0; i <= p; i++) {
+						int t = order[i];
+						pos[t] = lists[t].advance(pos[t], next);
 					}
-					else if (f1 < f2)
-					{
-						if (!result.contains(doc2) && result.size() < 5)
-						{
-							result.add(doc2);
-						}	
+					continue;
+				}
+			}
+			
+			if (doc(lists, pos, order[0]) == pivotDoc) {
+				// every term before the pivot is on pivotDoc: score it fully
+				int score = 0;
+				for (int i = 0; i < n && doc(lists, pos, order[i]) == pivotDoc; i++) {
+					int t = order[i];
+					score += lists[t].freqs[pos[t]];
+					pos[t]++;
+				}
+				if (score > threshold) {
+					best.add(new ScoredDocument(documents.name(pivotDoc), pivotDoc, score));
+					if (best.size() > k) {
+						best.poll();
 					}
 				}
+			} else {
+				// documents before pivotDoc cannot go over the threshold
+				for (int i = 0; i < p; i++) {
+					int t = order[i];
+					pos[t] = lists[t].advance(pos[t], pivotDoc);
+				}
 			}
 		}
 		
-		/*for(int k = 0; k < result.size(); k++)
-		{
-			if(k + 1 == result.size())
-			{
-				System.out.print(result.get(k));
+		return ranked(best);
+	}
+	
+	/**
+	 * Current document of a term's cursor in wandSearch, or Integer.MAX_VALUE once the
+	 * term's list is used up.
+	 */
+	private static int doc(DocOrderedPostings[] lists, int[] pos, int t) {
+		return pos[t] < lists[t].size() ? lists[t].docs[pos[t]] : Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Sorts terms by the current documents of their cursors, by insertion since there are
+	 * few terms and they are nearly sorted from the previous step.
+	 */
+	private static void sortByDoc(Integer[] order, DocOrderedPostings[] lists, int[] pos) {
+		for (int i = 1; i < order.length; i++) {
+			Integer t = order[i];
+			int d = doc(lists, pos, t);
+			int j = i - 1;
+			while (j >= 0 && doc(lists, pos, order[j]) > d) {
+				order[j + 1] = order[j];
+				j--;
 			}
-			else
-			{
-				System.out.print(result.get(k) + ", ");
+			order[j + 1] = t;
+		}
+	}
+	
+	/**
+	 * Search result for "kw1 or kw2 or ... or kwn" ranked by a scoring model, such as 
+	 * ScoringModel.BM25 or ScoringModel.TF_IDF, instead of by raw frequency. The statistics
+	 * the models need are kept as the index changes: the number of documents, the length
+	 * of each keyword's occurrence list as its document frequency, and the length of each
+	 * document in norms, so a query reads nothing but the occurrence lists of its keywords.
+	 * Documents with the same score are arranged in the order in which they were first
+	 * indexed.
+	 * 
+	 * @param keywords Keywords to search for
+	 * @param k Largest number of documents to return
+	 * @param model Scoring model
+	 * @return List of NAMES of documents in which any of the keywords occurs, arranged in
+	 *         descending order of score, at most k of them. If there are no matching
+	 *         documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	public ArrayList<String> rankedSearch(List<String> keywords, int k, ScoringModel model) {
+		checkK(k);
+		ArrayList<DocOrderedPostings> lists = new ArrayList<DocOrderedPostings>();
+		ArrayList<Double> weights = new ArrayList<Double>();
+		for (String term : new LinkedHashSet<String>(lowerCase(keywords))) {
+			DocOrderedPostings p = docOrdered(term);
+			if (p != null) {
+				lists.add(p);
+				weights.add(model.weight(p.size(), documents.size()));
+			}
+		}
+		float avgLength = norms.averageLength();
+		
+		// score documents one at a time, in ascending id order across all the lists
+		int[] pos = new int[lists.size()];
+		PriorityQueue<ScoredDocument> best = bestQueue(k);
+		while (true) {
+			int doc = Integer.MAX_VALUE;
+			for (int t = 0; t < lists.size(); t++) {
+				if (pos[t] < lists.get(t).size()) {
+					doc = Math.min(doc, lists.get(t).docs[pos[t]]);
+				}
+			}
+			if (doc == Integer.MAX_VALUE) {
+				break;
 			}
-		} */
+			float length = norms.length(doc);
+			double score = 0;
+			for (int t = 0; t < lists.size(); t++) {
+				DocOrderedPostings p = lists.get(t);
+				if (pos[t] < p.size() && p.docs[pos[t]] == doc) {
+					score += model.score(p.freqs[pos[t]++], length, avgLength, weights.get(t));
+				}
+			}
+			if (best.size() < k || score > best.peek().score) {
+				best.add(new ScoredDocument(documents.name(doc), doc, score));
+				if (best.size() > k) {
+					best.poll();
+				}
+			}
+		}
 		
-		if(result.size() == 0)
-		{
+		return ranked(best);
+	}
+	
+	/**
+	 * Search result for a phrase: the documents in which the keywords of the phrase occur
+	 * next to each other, in the same order as in the phrase. The words of the phrase are
+	 * separated by whitespace, and go through getKeyWord. Words that are not keywords, such
+	 * as noise words, are not indexed, so they match any one word of a document. Documents
+	 * are arranged in descending order of the number of times they contain the phrase, then
+	 * in the order in which they were first indexed.
+	 * 
+	 * Only documents that hold every keyword of the phrase are checked, starting from the
+	 * keyword with the shortest occurrence list. In each of them, the position lists of
+	 * the keywords are merged, looking for positions that are as far apart as the keywords
+	 * are in the phrase.
+	 * 
+	 * @param phrase Words of the phrase
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents that contain the phrase, at most k of them. If
+	 *         there are no matching documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 * @throws UnsupportedOperationException If the documents were not indexed with positions
+	 */
+	public ArrayList<String> phraseSearch(String phrase, int k) {
+		checkK(k);
+		ArrayList<String> terms = new ArrayList<String>();
+		ArrayList<Integer> offsets = new ArrayList<Integer>();
+		String[] words = phrase.trim().split("\\s+");
+		for (int i = 0; i < words.length; i++) {
+			String keyword = words[i].isEmpty() ? null : getKeyWord(words[i]);
+			if (keyword != null) {
+				terms.add(keyword);
+				offsets.add(i);
+			}
+		}
+		if (terms.isEmpty()) {
 			return null;
-		} 
+		}
+		ArrayList<Occurrence> rarest = null;
+		for (String term : terms) {
+			ArrayList<Occurrence> occs = keywordsIndex.get(term);
+			if (occs == null) {
+				return null;
+			}
+			if (rarest == null || occs.size() < rarest.size()) {
+				rarest = occs;
+			}
+		}
 		
-
+		PriorityQueue<ScoredDocument> best = bestQueue(k);
+		int[][] positions = new int[terms.size()][];
+		candidates:
+		for (Occurrence candidate : rarest) {
+			for (int t = 0; t < terms.size(); t++) {
+				Occurrence occ = occurrence(terms.get(t), candidate.document);
+				if (occ == null) {
+					continue candidates;
+				}
+				if (!(occ instanceof PositionalOccurrence)) {
+					throw new UnsupportedOperationException(candidate.document + " was indexed without positions");
+				}
+				positions[t] = ((PositionalOccurrence)occ).positions();
+			}
+			int matches = countPhrases(positions, offsets);
+			if (matches > 0) {
+				best.add(new ScoredDocument(candidate.document, documents.id(candidate.document), matches));
+				if (best.size() > k) {
+					best.poll();
+				}
+			}
+		}
 		
-		//System.out.println(result);
-
+		return ranked(best);
+	}
+	
+	/**
+	 * Search result for "kw1 or kw2", boosted for documents in which the two keywords occur
+	 * close together. A document is scored by the sum of the frequencies of kw1 and kw2 
+	 * in it, and if both occur in it, the score is multiplied by 1 + 1/d, where d is the
+	 * smallest number of words from an occurrence of one keyword to one of the other.
+	 * Documents with the same score are arranged in the order in which they were first
+	 * indexed. The result set is limited to 5 entries.
+	 * 
+	 * Candidates are taken in descending order of the sum of frequencies, the score before
+	 * boosting, by thresholdSearch: first PROXIMITY_CANDIDATES of them, and then twice as
+	 * many each time, until the fifth best boosted score is at least twice the sum of 
+	 * the last candidate. A boost at most doubles a score, so no document that was not
+	 * taken can score more, and the result is the same as if every document were scored.
+	 * In each candidate, d is found by one linear merge of the keywords' position lists.
+	 * 
+	 * @param kw1 First keyword
+	 * @param kw2 Second keyword
+	 * @return List of NAMES of documents in which either kw1 or kw2 occurs, arranged in
+	 *         descending order of boosted score. The result size is limited to 5 documents.
+	 *         If there are no matching documents, the result is null.
+	 * @throws UnsupportedOperationException If the documents were not indexed with positions
+	 */
+	public ArrayList<String> top5proximitySearch(String kw1, String kw2) {
+		kw1 = kw1.toLowerCase();
+		kw2 = kw2.toLowerCase();
+		// the same keyword twice is never boosted
+		int maxBoost = kw1.equals(kw2) ? 1 : 2;
+		for (int k = PROXIMITY_CANDIDATES; ; k *= 2) {
+			ArrayList<String> candidates = thresholdSearch(Arrays.asList(kw1, kw2), k);
+			if (candidates == null) {
+				return null;
+			}
+			
+			ScoredDocument[] ranked = new ScoredDocument[candidates.size()];
+			int lastSum = 0;
+			for (int i = 0; i < ranked.length; i++) {
+				String doc = candidates.get(i);
+				Occurrence o1 = positionalOccurrence(kw1, doc), o2 = positionalOccurrence(kw2, doc);
+				lastSum = (o1 == null ? 0 : o1.frequency) + (o2 == null || o2 == o1 ? 0 : o2.frequency);
+				double score = lastSum;
+				if (o1 != null && o2 != null && o1 != o2) {
+					int distance = minDistance(((PositionalOccurrence)o1).positions(), 
+							((PositionalOccurrence)o2).positions());
+					score *= 1 + 1.0 / distance;
+				}
+				ranked[i] = new ScoredDocument(doc, documents.id(doc), score);
+			}
+			Arrays.sort(ranked);
+			if (ranked.length == k && !(ranked.length >= 5 && ranked[4].score >= (double)maxBoost * lastSum)) {
+				continue;
+			}
+			ArrayList<String> result = new ArrayList<String>(5);
+			for (int i = 0; i < ranked.length && i < 5; i++) {
+				result.add(ranked[i].name);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Finds the Occurrence of a keyword in a document, which must have positions.
+	 * 
+	 * @param keyword Keyword, in lower case
+	 * @param docFile Document name
+	 * @return Occurrence, or null if the keyword does not occur in the document
+	 * @throws UnsupportedOperationException If the document was not indexed with positions
+	 */
+	private Occurrence positionalOccurrence(String keyword, String docFile) {
+		Occurrence occ = occurrence(keyword, docFile);
+		if (occ != null && !(occ instanceof PositionalOccurrence)) {
+			throw new UnsupportedOperationException(docFile + " was indexed without positions");
+		}
+		return occ;
+	}
+	
+	/**
+	 * Finds the smallest distance between a position of one list and a position of the
+	 * other, by walking both lists once, always advancing the one that is behind.
+	 * 
+	 * @param p1 Positions in ascending order
+	 * @param p2 Positions in ascending order, none equal to a position of p1
+	 * @return Smallest distance between positions of the two lists
+	 */
+	private static int minDistance(int[] p1, int[] p2) {
+		int best = Integer.MAX_VALUE;
+		int i = 0, j = 0;
+		while (i < p1.length && j < p2.length) {
+			if (p1[i] < p2[j]) {
+				best = Math.min(best, p2[j] - p1[i]);
+				i++;
+			} else {
+				best = Math.min(best, p1[i] - p2[j]);
+				j++;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Returns all keywords of the index that start with the given prefix, in alphabetical
+	 * order. The keywords are found in the sorted term dictionary, by a binary search for
+	 * the first one not less than the prefix, followed by a scan that stops at the first
+	 * one that does not start with it, so keywordsIndex is not scanned.
+	 * 
+	 * Keywords added to or taken out of the index after the dictionary was built, up to
+	 * SORTED_TERMS_CHANGES of them, are kept aside in sorted order and merged with those
+	 * found in it. Past that, the dictionary is built again by the next query that needs
+	 * it, which takes time in proportion to V log V for V keywords, so this is paid at
+	 * most once every SORTED_TERMS_CHANGES new or removed keywords.
+	 * 
+	 * @param prefix Start of keywords, which may be empty to match every keyword
+	 * @return Keywords that start with the prefix, lowercased
+	 */
+	public ArrayList<String> keywordsWithPrefix(String prefix) {
+		prefix = prefix.toLowerCase();
+		SortedTermDictionary terms = sortedTerms();
+		return withTermChanges(terms.withPrefix(prefix), 
+				addedTerms.subSet(prefix, true, prefix + Character.MAX_VALUE, true));
+	}
+	
+	/**
+	 * Search result for a keyword pattern, which is either a keyword, or the start of
+	 * keywords followed by a trailing '*' wildcard, such as "rabb*". The pattern is
+	 * expanded to the matching keywords with keywordsWithPrefix, and their occurrence
+	 * lists are merged as by topKSearch, so a document is scored by the highest frequency
+	 * of any matching keyword in it.
+	 * 
+	 * @param pattern Keyword, or prefix followed by '*'
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents in which a matching keyword occurs, arranged in
+	 *         descending order of frequencies, at most k of them. If there are no matching
+	 *         documents, the result is null.
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	public ArrayList<String> wildcardSearch(String pattern, int k) {
+		if (!pattern.endsWith("*")) {
+			return topKSearch(Collections.singletonList(pattern), k);
+		}
+		return topKSearch(keywordsWithPrefix(pattern.substring(0, pattern.length() - 1)), k);
+	}
+	
+	/**
+	 * Returns all keywords of the index that are within an edit distance of the given 
+	 * word, in alphabetical order. The edit distance is the number of single characters
+	 * that must be inserted, deleted or substituted to turn one word into the other.
+	 * 
+	 * The keywords are found by running a Levenshtein automaton of the word over the 
+	 * sorted term dictionary, rather than by computing the distance to every key of
+	 * keywordsIndex. Keywords that share leading characters share the automaton states
+	 * of those characters, and when no keyword that starts with some characters can be
+	 * within the distance, all of them are skipped. Keywords added to or taken out of 
+	 * the index since the dictionary was built are handled as by keywordsWithPrefix, 
+	 * each added one being run through the automaton on its own.
+	 * 
+	 * @param word Word to match, which need not be a keyword
+	 * @param maxEdits Largest edit distance, from 0 to 2
+	 * @return Keywords within maxEdits edits of the word
+	 * @throws IllegalArgumentException If maxEdits is not between 0 and 2
+	 */
+	public ArrayList<String> fuzzyKeywords(String word, int maxEdits) {
+		if (maxEdits < 0 || maxEdits > 2) {
+			throw new IllegalArgumentException("maxEdits must be from 0 to 2: " + maxEdits);
+		}
+		LevenshteinAutomaton automaton = new LevenshteinAutomaton(word.toLowerCase(), maxEdits);
+		SortedTermDictionary terms = sortedTerms();
+		ArrayList<String> added = new ArrayList<String>();
+		for (String term : addedTerms) {
+			if (automaton.accepts(term)) {
+				added.add(term);
+			}
+		}
+		return withTermChanges(terms.accepted(automaton), added);
+	}
+	
+	/**
+	 * Search result for a keyword that may be misspelled. The keyword is expanded to the
+	 * keywords of the index within maxEdits edits of it, with fuzzyKeywords, and their
+	 * occurrence lists are merged as by topKSearch, so a document is scored by the highest
+	 * frequency of any matching keyword in it.
+	 * 
+	 * @param keyword Keyword to search for
+	 * @param maxEdits Largest edit distance, from 0 to 2
+	 * @param k Largest number of documents to return
+	 * @return List of NAMES of documents in which a matching keyword occurs, arranged in
+	 *         descending order of frequencies, at most k of them. If there are no matching
+	 *         documents, the result is null.
+	 * @throws IllegalArgumentException If maxEdits is not between 0 and 2, or k is not positive
+	 */
+	public ArrayList<String> fuzzySearch(String keyword, int maxEdits, int k) {
+		return topKSearch(fuzzyKeywords(keyword, maxEdits), k);
+	}
+	
+	/**
+	 * Counts the places where a phrase occurs in a document, by merging the position
+	 * lists of its keywords. Every list is read once from front to back.
+	 * 
+	 * @param positions Positions of each keyword of the phrase in the document
+	 * @param offsets Position of each keyword in the phrase
+	 * @return Number of positions at which the phrase starts
+	 */
+	private static int countPhrases(int[][] positions, ArrayList<Integer> offsets) {
+		int[] pos = new int[positions.length];
+		int count = 0;
+		starts:
+		for (int first : positions[0]) {
+			int start = first - offsets.get(0);
+			for (int t = 1; t < positions.length; t++) {
+				int target = start + offsets.get(t);
+				while (pos[t] < positions[t].length && positions[t][pos[t]] < target) {
+					pos[t]++;
+				}
+				if (pos[t] == positions[t].length) {
+					break starts;
+				}
+				if (positions[t][pos[t]] != target) {
+					continue starts;
+				}
+			}
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the document-ordered view of a keyword's occurrence list, making it if
+	 * it has not been made since the list last changed.
+	 * 
+	 * @param keyword Keyword, in lower case
+	 * @return Document-ordered view, or null if the keyword is not in the index
+	 */
+	DocOrderedPostings docOrdered(String keyword) {
+		ArrayList<Occurrence> occs = keywordsIndex.get(keyword);
+		if (occs == null) {
+			return null;
+		}
+		DocOrderedPostings view = docOrderedPostings.get(keyword);
+		// the views of a snapshot are shared with older snapshots, which have other lists
+		if (view == null || view.list != occs) {
+			view = new DocOrderedPostings(occs, documents);
+			docOrderedPostings.put(keyword, view);
+		}
+		return view;
+	}
+	
+	/**
+	 * Returns the sorted term dictionary, building it from keywordsIndex if it was
+	 * dropped. Keywords added or taken out since it was built are in addedTerms and
+	 * removedTerms, which are empty if it is built here.
+	 * 
+	 * @return Sorted dictionary of the keywords
+	 */
+	SortedTermDictionary sortedTerms() {
+		SortedTermDictionary terms = sortedTerms;
+		if (terms == null) {
+			terms = new SortedTermDictionary(keywordsIndex.keySet());
+			sortedTerms = terms;
+		}
+		return terms;
+	}
+	
+	/**
+	 * Builds the sorted term dictionary of all keywords, with no changes kept aside.
+	 */
+	private void sortTerms() {
+		sortedTerms = new SortedTermDictionary(keywordsIndex.keySet());
+		addedTerms.clear();
+		removedTerms.clear();
+	}
+	
+	/**
+	 * Keeps aside a keyword that was added to keywordsIndex, for queries of the sorted
+	 * term dictionary, or drops the dictionary if too many changes are kept aside.
+	 */
+	private void termAdded(String keyword) {
+		if (sortedTerms != null && !removedTerms.remove(keyword)) {
+			addedTerms.add(keyword);
+			checkTermChanges();
+		}
+	}
+	
+	/**
+	 * Keeps aside a keyword that was taken out of keywordsIndex, for queries of the
+	 * sorted term dictionary, or drops the dictionary if too many changes are kept aside.
+	 */
+	private void termRemoved(String keyword) {
+		if (sortedTerms != null && !addedTerms.remove(keyword)) {
+			removedTerms.add(keyword);
+			checkTermChanges();
+		}
+	}
+	
+	/**
+	 * Drops the sorted term dictionary if more than SORTED_TERMS_CHANGES changes are kept
+	 * aside.
+	 */
+	private void checkTermChanges() {
+		if (addedTerms.size() + removedTerms.size() > SORTED_TERMS_CHANGES) {
+			sortedTerms = null;
+			addedTerms.clear();
+			removedTerms.clear();
+		}
+	}
+	
+	/**
+	 * Merges the keywords found in the sorted term dictionary with those that match
+	 * in addedTerms, and leaves out those in removedTerms.
+	 * 
+	 * @param found Keywords found in the dictionary, in sorted order
+	 * @param added Keywords of addedTerms that match, in sorted order
+	 * @return Matching keywords of keywordsIndex, in sorted order
+	 */
+	private ArrayList<String> withTermChanges(ArrayList<String> found, Collection<String> added) {
+		if (added.isEmpty() && removedTerms.isEmpty()) {
+			return found;
+		}
+		ArrayList<String> result = new ArrayList<String>(found.size() + added.size());
+		Iterator<String> a = added.iterator();
+		String next = a.hasNext() ? a.next() : null;
+		for (String term : found) {
+			while (next != null && next.compareTo(term) < 0) {
+				result.add(next);
+				next = a.hasNext() ? a.next() : null;
+			}
+			if (!removedTerms.contains(term)) {
+				result.add(term);
+			}
+		}
+		while (next != null) {
+			result.add(next);
+			next = a.hasNext() ? a.next() : null;
+		}
 		return result;
 	}
 	
+	/**
+	 * Checks the result size of a top-k query.
+	 * 
+	 * @param k Largest number of documents to return
+	 * @throws IllegalArgumentException If k is not positive
+	 */
+	private static void checkK(int k) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be positive: " + k);
+		}
+	}
+	
+	/**
+	 * Makes the queue of the k best documents of a query, with the worst at the head.
+	 * It is sized by the number of documents, so a large k costs nothing up front.
+	 * 
+	 * @param k Largest number of documents to keep
+	 * @return Empty queue
+	 */
+	private PriorityQueue<ScoredDocument> bestQueue(int k) {
+		return new PriorityQueue<ScoredDocument>(Math.min(k, documents.size()) + 1,
+				Collections.reverseOrder());
+	}
 	
+	/**
+	 * Returns the names of the documents of a query's queue of best documents, in
+	 * descending order of score, then in the order in which they were first indexed.
+	 * 
+	 * @param best Best documents
+	 * @return Document names, or null if there are none
+	 */
+	private static ArrayList<String> ranked(PriorityQueue<ScoredDocument> best) {
+		if (best.isEmpty()) {
+			return null;
+		}
+		ScoredDocument[] ranked = best.toArray(new ScoredDocument[best.size()]);
+		Arrays.sort(ranked);
+		ArrayList<String> result = new ArrayList<String>(ranked.length);
+		for (ScoredDocument doc : ranked) {
+			result.add(doc.name);
+		}
+		return result;
+	}
+	
+	private static ArrayList<String> lowerCase(List<String> keywords) {
+		ArrayList<String> lower = new ArrayList<String>(keywords.size());
+		for (String keyword : keywords) {
+			lower.add(keyword.toLowerCase());
+		}
+		return lower;
+	}
+	
+	/**
+	 * A document with its score in a query. Scored documents are ordered by descending
+	 * score, then by ascending document id.
+	 */
+	static class ScoredDocument implements Comparable<ScoredDocument> {
+		final String name;
+		final int id;
+		final double score;
+		
+		ScoredDocument(String name, int id, double score) {
+			this.name = name;
+			this.id = id;
+			this.score = score;
+		}
+		
+		public int compareTo(ScoredDocument other) {
+			int c = Double.compare(other.score, score);
+			return c != 0 ? c : Integer.compare(id, other.id);
+		}
+	}
+	
+	/**
+	 * The keywords of one document, and its Occurrence of each, in parallel arrays, which
+	 * take two references per keyword rather than a hash table entry.
+	 */
+	private static final class DocumentTerms {
+		final String[] keywords;
+		final Occurrence[] occurrences;
+		private int size;
+		
+		/**
+		 * Makes empty arrays for a document with the given number of keywords.
+		 */
+		DocumentTerms(int size) {
+			keywords = new String[size];
+			occurrences = new Occurrence[size];
+		}
+		
+		void add(String keyword, Occurrence occ) {
+			keywords[size] = keyword;
+			occurrences[size++] = occ;
+		}
+	}
+	
+	/**
+	 * The next occurrence to be merged from the occurrence list of one keyword of a query.
+	 * Heads are ordered by descending frequency of their next occurrence, then by the
+	 * position of their keyword in the query.
+	 */
+	private static class ListHead implements Comparable<ListHead> {
+		final ArrayList<Occurrence> occs;
+		final int keyword;
+		int pos;
+		
+		ListHead(ArrayList<Occurrence> occs, int keyword) {
+			this.occs = occs;
+			this.keyword = keyword;
+		}
+		
+		public int compareTo(ListHead other) {
+			int c = Integer.compare(other.occs.get(other.pos).frequency, occs.get(pos).frequency);
+			return c != 0 ? c : Integer.compare(keyword, other.keyword);
+		}
+	}
 }
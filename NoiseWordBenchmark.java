@@ -0,0 +1,115 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Measures the cost per token of checking noise words, as the noise word list grows
+ * from the noise words file to 10,000 words. The linear scan over the keys of the
+ * noiseWords hash table (the old getKeyWord check) is compared with a NoiseWordSet
+ * probed with the characters of each token.
+ *
+ * Usage: java search.NoiseWordBenchmark [noiseWordsFile [docFile ...]]
+ *
+ */
+public class NoiseWordBenchmark {
+
+	private static final int[] SIZES = {0, 1000, 2500, 5000, 10000};
+
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args)
+	throws IOException {
+		String noiseWordsFile = args.length > 0 ? args[0] : "noisewords.txt";
+		String[] docs = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length)
+				: new String[] {"AliceCh1.txt", "WowCh1.txt"};
+
+		ArrayList<String> stopList = new ArrayList<String>();
+		Scanner sc = new Scanner(new File(noiseWordsFile));
+		while (sc.hasNext()) {
+			stopList.add(sc.next());
+		}
+		sc.close();
+
+		// tokens as the tokenizer sees them: stripped and lowercased, in char buffers
+		ArrayList<char[]> tokens = new ArrayList<char[]>();
+		for (String doc : docs) {
+			sc = new Scanner(new File(doc));
+			while (sc.hasNext()) {
+				char[] word = sc.next().toCharArray();
+				int length = KeywordTokenizer.keywordLength(word, word.length);
+				if (length > 0) {
+					tokens.add(Arrays.copyOf(word, length));
+				}
+			}
+			sc.close();
+		}
+
+		System.out.printf("%d tokens%n", tokens.size());
+		System.out.printf("%8s %16s %16s%n", "words", "scan ns/token", "set ns/token");
+		int base = stopList.size();
+		for (int extra : SIZES) {
+			HashMap<String,String> noiseWords = new HashMap<String,String>();
+			for (String word : stopList) {
+				noiseWords.put(word, word);
+			}
+			for (int i = 0; noiseWords.size() < base + extra; i++) {
+				String word = syntheticWord(i);
+				noiseWords.put(word, word);
+			}
+			NoiseWordSet set = new NoiseWordSet(noiseWords.keySet());
+			double scan = Double.MAX_VALUE, probe = Double.MAX_VALUE;
+			for (int r = 0; r < ROUNDS; r++) {
+				scan = Math.min(scan, timeScan(noiseWords, tokens));
+				probe = Math.min(probe, timeSet(set, tokens));
+			}
+			System.out.printf("%8d %16.1f %16.1f%n", noiseWords.size(), scan, probe);
+		}
+	}
+
+	/**
+	 * Returns a word that is not in the noise words file, such as "qxab".
+	 */
+	private static String syntheticWord(int i) {
+		StringBuilder sb = new StringBuilder("qx");
+		do {
+			sb.append((char)('a' + i % 26));
+			i /= 26;
+		} while (i > 0);
+		return sb.toString();
+	}
+
+	private static double timeScan(HashMap<String,String> noiseWords, ArrayList<char[]> tokens) {
+		long start = System.nanoTime();
+		int hits = 0;
+		for (char[] token : tokens) {
+			String word = new String(token);
+			for (String key : noiseWords.keySet()) {
+				if (key.equals(word)) {
+					hits++;
+					break;
+				}
+			}
+		}
+		return report(start, hits, tokens.size());
+	}
+
+	private static double timeSet(NoiseWordSet set, ArrayList<char[]> tokens) {
+		long start = System.nanoTime();
+		int hits = 0;
+		for (char[] token : tokens) {
+			if (set.contains(token, token.length)) {
+				hits++;
+			}
+		}
+		return report(start, hits, tokens.size());
+	}
+
+	private static double report(long start, int hits, int tokens) {
+		double perToken = (double)(System.nanoTime() - start) / tokens;
+		if (hits < 0) {
+			System.out.println(hits);
+		}
+		return perToken;
+	}
+}
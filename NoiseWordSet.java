@@ -0,0 +1,72 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class is a hash set of noise words that can be probed directly with the characters
+ * of a word held in a buffer, so checking a token does not need a String to be built for it.
+ * The hash of a word is the same as String.hashCode, so the set is filled from the
+ * noise word strings without copying them.
+ *
+ */
+class NoiseWordSet {
+
+	/**
+	 * Open addressing table of noise words.
+	 */
+	private final String[] words;
+
+	/**
+	 * Builds the set of the given noise words.
+	 *
+	 * @param noiseWords Noise words
+	 */
+	NoiseWordSet(Collection<String> noiseWords) {
+		int capacity = 16;
+		while (capacity < noiseWords.size() * 2) {
+			capacity *= 2;
+		}
+		words = new String[capacity];
+		for (String word : noiseWords) {
+			int slot = slot(word.hashCode());
+			while (words[slot] != null && !words[slot].equals(word)) {
+				slot = (slot + 1) & (words.length - 1);
+			}
+			words[slot] = word;
+		}
+	}
+
+	/**
+	 * Tells whether a word is a noise word.
+	 *
+	 * @param word Characters of the word, starting at index 0
+	 * @param length Number of characters in the word
+	 * @return True if the word is in this set
+	 */
+	boolean contains(char[] word, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + word[i];
+		}
+		for (int slot = slot(hash); words[slot] != null; slot = (slot + 1) & (words.length - 1)) {
+			String w = words[slot];
+			if (w.length() == length && matches(w, word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches(String w, char[] word) {
+		for (int i = 0; i < w.length(); i++) {
+			if (w.charAt(i) != word[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int slot(int hash) {
+		return (hash ^ (hash >>> 16)) & (words.length - 1);
+	}
+}
@@ -0,0 +1,82 @@
+package search;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Checks that the parallel makeIndex builds exactly the index of the sequential one:
+ * the same occurrence lists, with occurrences of the same frequency in the same order,
+ * and the same document ids, for 2 to 8 worker threads. A synthetic text corpus is
+ * written to a temporary directory, and listed with some documents more than once;
+ * or the documents listed in a docs file are indexed. The time taken by each build is
+ * printed.
+ *
+ * Usage: java search.ParallelIndexCheck [docsFile noiseWordsFile]
+ *
+ */
+public class ParallelIndexCheck {
+
+	private static final int DOCS = 2000;
+
+	/**
+	 * Number of documents listed twice in the written docs file.
+	 */
+	private static final int REPEATED = 50;
+
+	private static final int[] THREADS = {2, 3, 4, 8};
+
+	public static void main(String[] args)
+	throws IOException {
+		Path dir = null;
+		String docsFile, noiseWordsFile;
+		if (args.length > 1) {
+			docsFile = args[0];
+			noiseWordsFile = args[1];
+		} else {
+			dir = Files.createTempDirectory("parallelindexcheck");
+			Random random = new Random(1);
+			ArrayList<String> files = CheckCorpus.writeCorpus(dir, DOCS, random);
+			for (int i = 0; i < REPEATED; i++) {
+				files.add(random.nextInt(files.size()), files.get(random.nextInt(DOCS)));
+			}
+			Path listed = dir.resolve("listed.txt");
+			Files.write(listed, files, StandardCharsets.UTF_8);
+			docsFile = listed.toString();
+			noiseWordsFile = dir.resolve("noisewords.txt").toString();
+		}
+		try {
+			long start = System.nanoTime();
+			LittleSearchEngine sequential = new LittleSearchEngine();
+			sequential.makeIndex(docsFile, noiseWordsFile);
+			System.out.printf("  sequential  %8.1f ms%n", (System.nanoTime() - start) / 1e6);
+			for (int threads : THREADS) {
+				start = System.nanoTime();
+				LittleSearchEngine parallel = new LittleSearchEngine();
+				parallel.makeIndex(docsFile, noiseWordsFile, threads);
+				System.out.printf("  %d threads   %8.1f ms%n", threads, (System.nanoTime() - start) / 1e6);
+				CheckCorpus.checkSameIndex("Index built by " + threads + " threads", sequential.keywordsIndex,
+						parallel.keywordsIndex, true);
+				if (parallel.documents.maxId() != sequential.documents.maxId()) {
+					throw new IllegalStateException(threads + " threads gave " + parallel.documents.maxId()
+							+ " document ids, not " + sequential.documents.maxId());
+				}
+				for (int id = 0; id < sequential.documents.maxId(); id++) {
+					String name = sequential.documents.name(id);
+					if (name == null ? parallel.documents.name(id) != null : !name.equals(parallel.documents.name(id))) {
+						throw new IllegalStateException("Document " + id + " built by " + threads + " threads is "
+								+ parallel.documents.name(id) + ", not " + name);
+					}
+				}
+			}
+			System.out.printf("%d keywords of %d documents built by %s threads agree with the "
+					+ "sequential build%n", sequential.keywordsIndex.size(), sequential.documents.size(),
+					Arrays.toString(THREADS));
+		} finally {
+			if (dir != null) {
+				CheckCorpus.delete(dir);
+			}
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class is an occurrence of a keyword in a document that also records where in the
+ * document the keyword occurs. A position is the number of words before the keyword in
+ * the document, counting every word, keyword or not. Positions are kept compressed, as
+ * the gaps between successive positions in variable-byte form. Engines that do not keep
+ * positions use plain Occurrence objects, so they pay nothing for this.
+ *
+ */
+class PositionalOccurrence extends Occurrence {
+
+	/**
+	 * Gaps between successive positions, in variable-byte form: 7 bits per byte, low bits
+	 * first, with the high bit set on all bytes but the last.
+	 */
+	private final byte[] positions;
+
+	/**
+	 * Initializes this occurrence with the given document and positions. The frequency is
+	 * the number of positions.
+	 *
+	 * @param doc Document name
+	 * @param positions Positions in ascending order
+	 * @param count Number of positions in the array
+	 */
+	PositionalOccurrence(String doc, int[] positions, int count) {
+		super(doc, count);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(count + 4);
+		int prev = 0;
+		for (int i = 0; i < count; i++) {
+			int gap = positions[i] - prev;
+			while ((gap & ~0x7f) != 0) {
+				out.write((gap & 0x7f) | 0x80);
+				gap >>>= 7;
+			}
+			out.write(gap);
+			prev = positions[i];
+		}
+		this.positions = out.toByteArray();
+	}
+
+	/**
+	 * Decodes the positions of the keyword in the document.
+	 *
+	 * @return Positions in ascending order, as many as the frequency
+	 */
+	int[] positions() {
+		int[] result = new int[frequency];
+		int pos = 0, prev = 0;
+		for (int i = 0; i < frequency; i++) {
+			int b = positions[pos++];
+			int gap = b & 0x7f;
+			for (int shift = 7; b < 0; shift += 7) {
+				b = positions[pos++];
+				gap |= (b & 0x7f) << shift;
+			}
+			prev += gap;
+			result[i] = prev;
+		}
+		return result;
+	}
+
+	/* (non-Javadoc)
+	 * @see search.Occurrence#toString()
+	 */
+	public String toString() {
+		return "(" + document + "," + frequency + "," + Arrays.toString(positions()) + ")";
+	}
+}
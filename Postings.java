@@ -0,0 +1,31 @@
+package search;
+
+/**
+ * This interface is the postings of a keyword in some storage format, as produced by a
+ * PostingsCodec. Postings are read in descending order of frequency, and postings with
+ * the same frequency in ascending order of document id.
+ *
+ */
+interface Postings {
+
+	/**
+	 * Number of postings.
+	 *
+	 * @return Number of postings
+	 */
+	int size();
+
+	/**
+	 * Number of bytes taken by the postings data, not counting object headers.
+	 *
+	 * @return Size of the postings data in bytes
+	 */
+	long sizeInBytes();
+
+	/**
+	 * Returns a cursor over the postings.
+	 *
+	 * @return Postings cursor
+	 */
+	PostingsCursor cursor();
+}
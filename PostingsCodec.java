@@ -0,0 +1,38 @@
+package search;
+
+/**
+ * This interface turns the postings of a keyword into a storage format. A CompactIndex
+ * is built with one codec for all its keywords, so formats can be swapped and compared
+ * on the same index.
+ *
+ */
+public interface PostingsCodec {
+
+	/**
+	 * Postings kept as they are, in parallel int arrays.
+	 */
+	PostingsCodec RAW = new PostingsCodec() {
+		public Postings encode(PostingsList list) {
+			list.trim();
+			return list;
+		}
+
+		public String toString() {
+			return "raw";
+		}
+	};
+
+	/**
+	 * Postings compressed with delta and variable-byte encoding.
+	 */
+	PostingsCodec VBYTE = new VBytePostings.Codec();
+
+	/**
+	 * Encodes the postings of a keyword. The postings must be in descending order of 
+	 * frequency, and postings with the same frequency in ascending order of document id.
+	 *
+	 * @param list Postings of a keyword
+	 * @return Encoded postings
+	 */
+	Postings encode(PostingsList list);
+}
@@ -0,0 +1,67 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares the postings codecs on the same index: size of all postings data, time to
+ * decode every posting of every keyword, and time per top5search query over random
+ * pairs of keywords. Runs on the synthetic corpus of IndexMemoryBenchmark, or on the
+ * documents listed in a docs file.
+ *
+ * Usage: java search.PostingsCodecBenchmark [docsFile noiseWordsFile]
+ *
+ */
+public class PostingsCodecBenchmark {
+
+	private static final PostingsCodec[] CODECS = {PostingsCodec.RAW, PostingsCodec.VBYTE};
+
+	private static final int ROUNDS = 10;
+
+	private static final int QUERIES = 100000;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		LittleSearchEngine engine;
+		if (args.length > 1) {
+			engine = new LittleSearchEngine();
+			engine.makeIndex(args[0], args[1]);
+		} else {
+			engine = IndexMemoryBenchmark.syntheticCorpus();
+		}
+		String[] keywords = engine.keywordsIndex.keySet().toArray(new String[0]);
+
+		System.out.printf("%8s %14s %16s %14s%n", "codec", "bytes", "decode ns/post", "query ns");
+		for (PostingsCodec codec : CODECS) {
+			CompactIndex index = engine.compactIndex(codec);
+			long postings = 0;
+			double decode = Double.MAX_VALUE, query = Double.MAX_VALUE;
+			for (int r = 0; r < ROUNDS; r++) {
+				long start = System.nanoTime();
+				long sum = 0;
+				postings = 0;
+				for (Postings p : index.postings) {
+					PostingsCursor c = p.cursor();
+					while (c.next()) {
+						sum += c.doc() + c.frequency();
+						postings++;
+					}
+				}
+				decode = Math.min(decode, (double)(System.nanoTime() - start) / postings);
+
+				Random random = new Random(r);
+				start = System.nanoTime();
+				for (int q = 0; q < QUERIES; q++) {
+					ArrayList<String> result = index.top5search(keywords[random.nextInt(keywords.length)],
+							keywords[random.nextInt(keywords.length)]);
+					sum += result.size();
+				}
+				query = Math.min(query, (double)(System.nanoTime() - start) / QUERIES);
+				if (sum == 42) {
+					System.out.println();
+				}
+			}
+			System.out.printf("%8s %,14d %16.2f %14.1f%n", codec, index.postingsSizeInBytes(), decode, query);
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package search;
+
+/**
+ * This interface iterates over the postings of a keyword, one (document id, frequency)
+ * posting at a time, in the order in which the postings are stored. The cursor starts
+ * before the first posting.
+ *
+ */
+interface PostingsCursor {
+
+	/**
+	 * Moves to the next posting.
+	 *
+	 * @return True if there is a next posting, false if all postings have been read
+	 */
+	boolean next();
+
+	/**
+	 * Document id of the current posting.
+	 *
+	 * @return Document id
+	 */
+	int doc();
+
+	/**
+	 * Frequency of the keyword in the document of the current posting.
+	 *
+	 * @return Frequency
+	 */
+	int frequency();
+}
@@ -0,0 +1,149 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class holds the postings of a keyword in two parallel int arrays, one of document
+ * ids and one of frequencies, in descending order of frequency. Postings with the same
+ * frequency stay in the order in which they were added. The arrays grow by doubling, so
+ * adding a posting does not allocate an object.
+ *
+ */
+class PostingsList implements Postings {
+
+	/**
+	 * Document id of each posting.
+	 */
+	private int[] docs;
+
+	/**
+	 * Frequency of each posting.
+	 */
+	private int[] freqs;
+
+	/**
+	 * Number of postings.
+	 */
+	private int size;
+
+	/**
+	 * Initializes an empty list with room for the given number of postings.
+	 *
+	 * @param capacity Initial capacity
+	 */
+	PostingsList(int capacity) {
+		docs = new int[Math.max(capacity, 1)];
+		freqs = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds a posting at the end of the list. The frequency must not be greater than that
+	 * of the last posting.
+	 *
+	 * @param doc Document id
+	 * @param freq Frequency
+	 */
+	void append(int doc, int freq) {
+		if (size > 0 && freqs[size - 1] < freq) {
+			throw new IllegalArgumentException("Frequency " + freq + " is out of order");
+		}
+		ensureCapacity(size + 1);
+		docs[size] = doc;
+		freqs[size] = freq;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long sizeInBytes() {
+		return 8L * size;
+	}
+
+	/**
+	 * Document id of a posting.
+	 *
+	 * @param i Index of the posting
+	 * @return Document id
+	 */
+	int doc(int i) {
+		return docs[i];
+	}
+
+	/**
+	 * Frequency of a posting.
+	 *
+	 * @param i Index of the posting
+	 * @return Frequency
+	 */
+	int frequency(int i) {
+		return freqs[i];
+	}
+
+	/**
+	 * Shrinks the arrays to the number of postings, once no more postings will be added.
+	 */
+	void trim() {
+		if (docs.length > size) {
+			docs = Arrays.copyOf(docs, Math.max(size, 1));
+			freqs = Arrays.copyOf(freqs, Math.max(size, 1));
+		}
+	}
+
+	/**
+	 * Sorts each run of postings that have the same frequency in ascending order of
+	 * document id, as expected by PostingsCodec.
+	 */
+	void sortRunsByDoc() {
+		int i = 0;
+		while (i < size) {
+			int end = i + 1;
+			while (end < size && freqs[end] == freqs[i]) {
+				end++;
+			}
+			Arrays.sort(docs, i, end);
+			i = end;
+		}
+	}
+
+	public PostingsCursor cursor() {
+		return new PostingsCursor() {
+			private int i = -1;
+
+			public boolean next() {
+				return ++i < size;
+			}
+
+			public int doc() {
+				return docs[i];
+			}
+
+			public int frequency() {
+				return freqs[i];
+			}
+		};
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > docs.length) {
+			int n = Math.max(capacity, docs.length * 2);
+			docs = Arrays.copyOf(docs, n);
+			freqs = Arrays.copyOf(freqs, n);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append("(").append(docs[i]).append(",").append(freqs[i]).append(")");
+		}
+		return sb.append("]").toString();
+	}
+}
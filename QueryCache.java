@@ -0,0 +1,179 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class is a bounded cache of search results, keyed on the normalized query. An
+ * engine gives its cache the version of its index with every lookup; the version changes
+ * whenever documents are merged into or taken out of the index, and then every cached
+ * result is dropped, so a stale result is never returned. When the cache is full, its
+ * EvictionPolicy decides whether a new result replaces the least recently used one.
+ *
+ * Hits, misses and evictions are counted. All methods are synchronized, so a cache can
+ * be used by concurrent searches, and shared by an engine and its snapshots. Lookups 
+ * for an older version than that of the cached results always miss.
+ *
+ */
+public class QueryCache {
+
+	/**
+	 * Cached value of a query that matched no documents.
+	 */
+	static final ArrayList<String> NO_RESULT = new ArrayList<String>(0);
+
+	/**
+	 * Cached results, in order of last use, least recent first.
+	 */
+	private final LinkedHashMap<Object,ArrayList<String>> results;
+
+	/**
+	 * Largest number of cached results.
+	 */
+	private final int capacity;
+
+	/**
+	 * Decides which results are kept when the cache is full.
+	 */
+	private final EvictionPolicy policy;
+
+	/**
+	 * Version of the index that the cached results were computed on.
+	 */
+	private long version;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * Initializes an empty LRU cache.
+	 *
+	 * @param capacity Largest number of cached results
+	 * @throws IllegalArgumentException If capacity is not positive
+	 */
+	public QueryCache(int capacity) {
+		this(capacity, new EvictionPolicy.Lru());
+	}
+
+	/**
+	 * Initializes an empty cache with the given eviction policy.
+	 *
+	 * @param capacity Largest number of cached results
+	 * @param policy Eviction policy, not used by any other cache
+	 * @throws IllegalArgumentException If capacity is not positive
+	 */
+	public QueryCache(int capacity, EvictionPolicy policy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.policy = policy;
+		results = new LinkedHashMap<Object,ArrayList<String>>(capacity * 4 / 3 + 1, 0.75f, true);
+	}
+
+	/**
+	 * Looks up the result of a query.
+	 *
+	 * @param key Normalized query
+	 * @param version Current version of the index
+	 * @return Cached result, NO_RESULT if the query is cached as matching no documents,
+	 *         or null if it is not cached
+	 */
+	synchronized ArrayList<String> get(Object key, long version) {
+		checkVersion(version);
+		policy.recordAccess(key);
+		// a search on an older snapshot of the index must not see newer results
+		ArrayList<String> result = version == this.version ? results.get(key) : null;
+		if (result == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Caches the result of a query, if the eviction policy admits it.
+	 *
+	 * @param key Normalized query
+	 * @param version Version of the index the result was computed on
+	 * @param result Result of the query, or null if it matched no documents
+	 */
+	synchronized void put(Object key, long version, ArrayList<String> result) {
+		checkVersion(version);
+		if (this.version != version) {
+			return;
+		}
+		if (results.size() >= capacity && !results.containsKey(key)) {
+			Iterator<Object> eldest = results.keySet().iterator();
+			if (!policy.admit(key, eldest.next())) {
+				return;
+			}
+			eldest.remove();
+			evictions++;
+		}
+		results.put(key, result == null ? NO_RESULT : result);
+	}
+
+	/**
+	 * Drops all cached results if they were computed on an older version of the index.
+	 * A result computed on an older version than the cached ones is not cached.
+	 */
+	private void checkVersion(long version) {
+		if (version > this.version) {
+			results.clear();
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Drops all cached results. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		results.clear();
+	}
+
+	/**
+	 * Number of lookups that found a cached result.
+	 *
+	 * @return Number of hits
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * Number of lookups that found no cached result.
+	 *
+	 * @return Number of misses
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * Number of cached results evicted to make room for others. Results dropped because
+	 * the index changed are not counted.
+	 *
+	 * @return Number of evictions
+	 */
+	public synchronized long evictions() {
+		return evictions;
+	}
+
+	/**
+	 * Number of cached results.
+	 *
+	 * @return Number of results in the cache
+	 */
+	public synchronized int size() {
+		return results.size();
+	}
+
+	public synchronized String toString() {
+		return policy + " cache of " + results.size() + "/" + capacity + ": " + hits + " hits, "
+				+ misses + " misses, " + evictions + " evictions";
+	}
+}
@@ -0,0 +1,130 @@
+package search;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Checks that a QueryCache never makes top5search return a stale result. An engine
+ * with a small cache, so that results are evicted too, runs random queries of common
+ * keyword pairs, mixed with every kind of change to its index: documents taken out,
+ * merged again with new frequencies, merged for the first time, handed over from a
+ * ConcurrentKeywordIndex, and the whole index loaded from a file. Each result is
+ * compared with an uncached merge of the occurrence lists as they are at that moment.
+ * Snapshots share the cache of their engine, so old snapshots are searched along the
+ * way, and checked against their own lists. This is done with an LRU and a TinyLFU
+ * cache, on the synthetic corpus of IndexMemoryBenchmark, or on the documents listed
+ * in a docs file, and the cache counters are printed.
+ *
+ * Usage: java search.QueryCacheCheck [docsFile noiseWordsFile]
+ *
+ */
+public class QueryCacheCheck {
+
+	private static final int QUERIES = 100000;
+
+	private static final int COMMON_TERMS = 100;
+
+	private static final int CAPACITY = 200;
+
+	/**
+	 * Average number of queries between changes to the index.
+	 */
+	private static final int QUERIES_PER_CHANGE = 1000;
+
+	/**
+	 * Number of old snapshots searched.
+	 */
+	private static final int SNAPSHOTS = 4;
+
+	public static void main(String[] args)
+	throws IOException {
+		EvictionPolicy[] policies = {new EvictionPolicy.Lru(), new EvictionPolicy.TinyLfu(CAPACITY)};
+		for (EvictionPolicy policy : policies) {
+			LittleSearchEngine engine = CheckCorpus.engine(args);
+			QueryCache cache = new QueryCache(CAPACITY, policy);
+			engine.setQueryCache(cache);
+			run(engine, new Random(21));
+			System.out.printf("%d queries agree with the uncached merge: %s%n", QUERIES, cache);
+		}
+	}
+
+	private static void run(LittleSearchEngine engine, Random random)
+	throws IOException {
+		ArrayList<String> terms = CheckCorpus.termsByListLength(engine);
+		List<String> common = terms.subList(0, Math.min(COMMON_TERMS, terms.size()));
+		ArrayList<String> docs = CheckCorpus.documents(engine);
+		ArrayList<LittleSearchEngine> snapshots = new ArrayList<LittleSearchEngine>();
+		Path saved = Files.createTempFile("querycachecheck", ".idx");
+		try {
+			engine.saveIndex(saved);
+			int added = 0;
+			for (int q = 0; q < QUERIES; q++) {
+				if (random.nextInt(QUERIES_PER_CHANGE) == 0) {
+					change(engine, docs, common, random, saved, added++);
+					snapshots.add(engine.snapshot());
+					if (snapshots.size() > SNAPSHOTS) {
+						snapshots.remove(0);
+					}
+				}
+				// skew the queries towards a few pairs, so that some hit the cache
+				double r = random.nextDouble();
+				String kw1 = common.get((int)(r * r * common.size()));
+				r = random.nextDouble();
+				String kw2 = common.get((int)(r * r * common.size()));
+				check(engine, kw1, kw2);
+				if (!snapshots.isEmpty()) {
+					check(snapshots.get(random.nextInt(snapshots.size())), kw1, kw2);
+				}
+			}
+		} finally {
+			Files.delete(saved);
+		}
+		if (engine.getQueryCache().hits() == 0) {
+			throw new IllegalStateException("No query hit the cache");
+		}
+	}
+
+	/**
+	 * Makes one random change to the index.
+	 */
+	private static void change(LittleSearchEngine engine, ArrayList<String> docs, List<String> terms,
+			Random random, Path saved, int added)
+	throws IOException {
+		String doc = docs.get(random.nextInt(docs.size()));
+		switch (random.nextInt(10)) {
+		case 0:
+			engine.removeDocument(doc);
+			break;
+		case 1:
+			ConcurrentKeywordIndex index = new ConcurrentKeywordIndex();
+			index.mergeKeyWords(CheckCorpus.randomKeywords("handed" + added, terms, 1 + random.nextInt(20), random));
+			engine.mergeKeyWords(index);
+			break;
+		case 2:
+			engine.loadIndex(saved);
+			break;
+		case 3:
+		case 4:
+			engine.mergeKeyWords(CheckCorpus.randomKeywords("added" + added, terms, 1 + random.nextInt(20), random));
+			break;
+		default:
+			// merging a document that is indexed replaces its keywords
+			engine.mergeKeyWords(CheckCorpus.randomKeywords(doc, terms, 1 + random.nextInt(20), random));
+		}
+	}
+
+	/**
+	 * Runs top5search, and throws IllegalStateException if its result is not that of
+	 * an uncached merge of the keywords' lists.
+	 */
+	private static void check(LittleSearchEngine engine, String kw1, String kw2) {
+		ArrayList<String> expected = LittleSearchEngine.top5merge(engine.keywordsIndex.get(kw1),
+				engine.keywordsIndex.get(kw2));
+		ArrayList<String> result = engine.top5search(kw1, kw2);
+		if (expected == null ? result != null : !expected.equals(result)) {
+			throw new IllegalStateException("Result of " + kw1 + " or " + kw2 + " is " + result
+					+ ", not " + expected);
+		}
+	}
+}
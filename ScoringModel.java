@@ -0,0 +1,93 @@
+package search;
+
+/**
+ * This interface scores a document for one keyword of a query, from the frequency of the
+ * keyword in the document and statistics of the collection that the index keeps as it is
+ * built: the number of documents, the number of documents each keyword occurs in, and the
+ * length of each document in keywords. A document's score for a query is the sum of its
+ * scores for the query keywords.
+ *
+ */
+public interface ScoringModel {
+
+	/**
+	 * Okapi BM25 with the usual parameters, k1 = 1.2 and b = 0.75.
+	 */
+	ScoringModel BM25 = new BM25(1.2, 0.75);
+
+	/**
+	 * TF-IDF with logarithmic term frequency and length normalization.
+	 */
+	ScoringModel TF_IDF = new TfIdf();
+
+	/**
+	 * Weight of a keyword in the collection, computed once per query keyword.
+	 *
+	 * @param docFreq Number of documents the keyword occurs in
+	 * @param docCount Number of documents in the index
+	 * @return Keyword weight
+	 */
+	double weight(int docFreq, int docCount);
+
+	/**
+	 * Score of a document for a keyword.
+	 *
+	 * @param freq Frequency of the keyword in the document
+	 * @param docLength Number of keywords in the document
+	 * @param avgDocLength Average number of keywords in a document of the index
+	 * @param weight Weight of the keyword, from the weight method
+	 * @return Score
+	 */
+	double score(int freq, float docLength, float avgDocLength, double weight);
+
+	/**
+	 * Okapi BM25: idf = ln(1 + (N - df + 0.5) / (df + 0.5)), and
+	 * score = idf * f * (k1 + 1) / (f + k1 * (1 - b + b * dl / avgdl)).
+	 */
+	public static class BM25 implements ScoringModel {
+		private final double k1;
+		private final double b;
+
+		/**
+		 * Initializes BM25 with the given parameters.
+		 *
+		 * @param k1 Term frequency saturation, usually between 1.2 and 2
+		 * @param b Strength of document length normalization, between 0 and 1
+		 */
+		public BM25(double k1, double b) {
+			this.k1 = k1;
+			this.b = b;
+		}
+
+		public double weight(int docFreq, int docCount) {
+			return Math.log(1 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+		}
+
+		public double score(int freq, float docLength, float avgDocLength, double weight) {
+			double norm = k1 * (1 - b + b * docLength / avgDocLength);
+			return weight * freq * (k1 + 1) / (freq + norm);
+		}
+
+		public String toString() {
+			return "BM25(k1=" + k1 + ",b=" + b + ")";
+		}
+	}
+
+	/**
+	 * TF-IDF: idf = ln(1 + N / df), and score = idf * (1 + ln f) / sqrt(dl).
+	 */
+	public static class TfIdf implements ScoringModel {
+
+		public double weight(int docFreq, int docCount) {
+			return Math.log(1 + (double)docCount / docFreq);
+		}
+
+		public double score(int freq, float docLength, float avgDocLength, double weight) {
+			return weight * (1 + Math.log(freq)) / Math.sqrt(Math.max(docLength, 1));
+		}
+
+		public String toString() {
+			return "TF-IDF";
+		}
+	}
+}
@@ -0,0 +1,335 @@
+package search;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.net.httpserver.*;
+
+/**
+ * This class serves searches of a LittleSearchEngine over HTTP, with the JDK's built-in
+ * server. Each query type is a GET endpoint whose parameters are in the query string,
+ * and every response is a JSON object. Keyword lists are separated by commas or spaces.
+ *
+ *   /top5search?kw1=alice&kw2=rabbit
+ *   /proximity?kw1=white&kw2=rabbit
+ *   /topk?q=alice,rabbit&k=10           (also /threshold, /and and /wand)
+ *   /ranked?q=alice,rabbit&k=10&model=bm25    (or tfidf)
+ *   /phrase?q=white+rabbit&k=10
+ *   /wildcard?q=rabb*&k=10
+ *   /fuzzy?q=rabit&edits=1&k=10
+ *
+ * A search responds with {"results":[document names]}, which is empty if the search
+ * returned null. A bad request, such as one whose k is over MAX_K, responds with
+ * status 400 and {"error":message}, a search that the engine cannot do, such as a
+ * phrase search of an engine that records no positions, with status 501, and any
+ * other failure with status 500.
+ *
+ * Every request runs on its own thread, a virtual thread if the JDK has them (Java 21
+ * and later), or otherwise a platform thread from a cached pool. Requests search the
+ * engine's latest snapshot, so the engine can go on indexing while it is served. The
+ * first request takes the first snapshot, and from then on the engine publishes one
+ * after every change, copying only the occurrence lists that changed.
+ *
+ * Usage: java search.SearchServer docsFile noiseWordsFile [port]
+ *
+ */
+public class SearchServer {
+
+	/**
+	 * Port used by main if none is given.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * Result size of searches whose request has no k parameter.
+	 */
+	private static final int DEFAULT_K = 10;
+
+	/**
+	 * Largest result size a request may ask for. The engine sizes its work by k, so k
+	 * must not be left to the client.
+	 */
+	static final int MAX_K = 1000;
+
+	/**
+	 * Engine whose snapshots are searched.
+	 */
+	private final LittleSearchEngine engine;
+
+	private final HttpServer server;
+
+	private final ExecutorService executor;
+
+	/**
+	 * Initializes a server of an engine, bound to a port of all local addresses. The
+	 * server does not accept requests until it is started.
+	 *
+	 * @param engine Engine to search
+	 * @param port Port, or 0 for any free port
+	 * @param backlog Largest number of connections waiting to be accepted, or 0 for the system default
+	 * @throws IOException If the port could not be bound
+	 */
+	public SearchServer(LittleSearchEngine engine, int port, int backlog)
+	throws IOException {
+		this.engine = engine;
+		server = HttpServer.create(new InetSocketAddress(port), backlog);
+		executor = perRequestExecutor();
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+	}
+
+	/**
+	 * Starts accepting requests.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waits up to the given time for requests in progress to
+	 * finish, and stops their threads.
+	 *
+	 * @param delay Longest wait, in seconds
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Port the server is bound to.
+	 *
+	 * @return Port
+	 */
+	public int port() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Makes an executor that runs each task on a new virtual thread, if the JDK has
+	 * Executors.newVirtualThreadPerTaskExecutor, and otherwise on a thread of a cached
+	 * pool, which makes a new platform thread whenever all of its threads are busy.
+	 *
+	 * @return Executor of requests
+	 */
+	static ExecutorService perRequestExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// before Java 21, or with virtual threads still in preview and not enabled
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Answers one request.
+	 */
+	private void serve(HttpExchange exchange)
+	throws IOException {
+		int status = 200;
+		String body;
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				throw new IllegalArgumentException("only GET is supported");
+			}
+			String path = exchange.getRequestURI().getPath();
+			HashMap<String,String> params = parameters(exchange.getRequestURI().getRawQuery());
+			ArrayList<String> results = search(engine.snapshot(), path, params);
+			if (results == NOT_FOUND) {
+				status = 404;
+				body = error("no such endpoint: " + path);
+			} else {
+				body = results(results);
+			}
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			body = error(e.getMessage());
+		} catch (UnsupportedOperationException e) {
+			status = 501;
+			body = error(e.getMessage());
+		} catch (RuntimeException e) {
+			status = 500;
+			body = error(e.toString());
+		} catch (Throwable e) {
+			// such as OutOfMemoryError: answer, rather than let the exchange die unanswered
+			status = 500;
+			body = error(e.toString());
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Result of search for a path that is not an endpoint.
+	 */
+	private static final ArrayList<String> NOT_FOUND = new ArrayList<String>(0);
+
+	/**
+	 * Runs the search of an endpoint.
+	 *
+	 * @param index Snapshot to search
+	 * @param path Path of the endpoint
+	 * @param params Request parameters
+	 * @return Search result, which may be null, or NOT_FOUND if the path is not an endpoint
+	 * @throws IllegalArgumentException If a parameter is missing or not valid
+	 */
+	private static ArrayList<String> search(LittleSearchEngine index, String path,
+			HashMap<String,String> params) {
+		if (path.equals("/top5search")) {
+			return index.top5search(required(params, "kw1"), required(params, "kw2"));
+		} else if (path.equals("/proximity")) {
+			return index.top5proximitySearch(required(params, "kw1"), required(params, "kw2"));
+		} else if (path.equals("/topk")) {
+			return index.topKSearch(keywords(params), k(params));
+		} else if (path.equals("/threshold")) {
+			return index.thresholdSearch(keywords(params), k(params));
+		} else if (path.equals("/and")) {
+			return index.andSearch(keywords(params), k(params));
+		} else if (path.equals("/wand")) {
+			return index.wandSearch(keywords(params), k(params));
+		} else if (path.equals("/ranked")) {
+			return index.rankedSearch(keywords(params), k(params), model(params.get("model")));
+		} else if (path.equals("/phrase")) {
+			return index.phraseSearch(required(params, "q"), k(params));
+		} else if (path.equals("/wildcard")) {
+			return index.wildcardSearch(required(params, "q"), k(params));
+		} else if (path.equals("/fuzzy")) {
+			String edits = params.get("edits");
+			return index.fuzzySearch(required(params, "q"),
+					edits == null ? 1 : number("edits", edits), k(params));
+		}
+		return NOT_FOUND;
+	}
+
+	private static ScoringModel model(String name) {
+		if (name == null || name.equalsIgnoreCase("bm25")) {
+			return ScoringModel.BM25;
+		} else if (name.equalsIgnoreCase("tfidf")) {
+			return ScoringModel.TF_IDF;
+		}
+		throw new IllegalArgumentException("unknown model: " + name);
+	}
+
+	private static List<String> keywords(HashMap<String,String> params) {
+		String q = required(params, "q").trim();
+		if (q.isEmpty()) {
+			throw new IllegalArgumentException("no keywords in q");
+		}
+		return Arrays.asList(q.split("[,\\s]+"));
+	}
+
+	private static int k(HashMap<String,String> params) {
+		String value = params.get("k");
+		int k = value == null ? DEFAULT_K : number("k", value);
+		if (k > MAX_K) {
+			throw new IllegalArgumentException("k must be at most " + MAX_K + ": " + k);
+		}
+		return k;
+	}
+
+	private static int number(String name, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(name + " is not a number: " + value);
+		}
+	}
+
+	private static String required(HashMap<String,String> params, String name) {
+		String value = params.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("missing parameter: " + name);
+		}
+		return value;
+	}
+
+	/**
+	 * Decodes the parameters of a query string. If a parameter is repeated, the last
+	 * value is kept.
+	 *
+	 * @param query Raw query string, or null
+	 * @return Parameter values, keyed by name
+	 */
+	static HashMap<String,String> parameters(String query) {
+		HashMap<String,String> params = new HashMap<String,String>();
+		if (query == null || query.isEmpty()) {
+			return params;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq < 0) {
+				params.put(URLDecoder.decode(pair, StandardCharsets.UTF_8), "");
+			} else {
+				params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+						URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+			}
+		}
+		return params;
+	}
+
+	private static String results(ArrayList<String> results) {
+		StringBuilder sb = new StringBuilder("{\"results\":[");
+		if (results != null) {
+			for (int i = 0; i < results.size(); i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				quote(results.get(i), sb);
+			}
+		}
+		return sb.append("]}").toString();
+	}
+
+	private static String error(String message) {
+		StringBuilder sb = new StringBuilder("{\"error\":");
+		quote(String.valueOf(message), sb);
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Appends a string to a JSON text, as a quoted and escaped JSON string.
+	 */
+	static void quote(String s, StringBuilder sb) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < ' ') {
+				sb.append(String.format("\\u%04x", (int)c));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	public static void main(String[] args)
+	throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: java search.SearchServer docsFile noiseWordsFile [port]");
+			System.exit(1);
+		}
+		LittleSearchEngine engine = new LittleSearchEngine(LittleSearchEngine.ReadStrategy.AUTO, true);
+		engine.makeIndex(args[0], args[1]);
+		SearchServer server = new SearchServer(engine,
+				args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT, 0);
+		server.start();
+		System.out.println("Serving " + engine.documents.size() + " documents on port " + server.port());
+	}
+}
@@ -0,0 +1,119 @@
+package search;
+
+import java.io.*;
+import java.net.*;
+import java.net.http.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * Load test of SearchServer on the local machine: a server is started over the synthetic
+ * corpus of IndexMemoryBenchmark, or the documents listed in a docs file, and a client
+ * keeps a given number of requests in flight at all times, each on its own HTTP/1.1
+ * connection, until a given number of requests have been answered. Requests are random
+ * top5search, topk, and and ranked searches of common keywords. Throughput and latency
+ * percentiles are printed, with the number of requests that failed.
+ *
+ * The client and the server share the machine, so the throughput is a lower bound of
+ * what the server alone can do.
+ *
+ * Usage: java search.SearchServerBenchmark [connections [requests [docsFile noiseWordsFile]]]
+ *
+ */
+public class SearchServerBenchmark {
+
+	private static final int COMMON_TERMS = 200;
+
+	private static final String[] ENDPOINTS = {"top5search", "topk", "and", "ranked"};
+
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+		int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		final LittleSearchEngine engine;
+		if (args.length > 3) {
+			engine = new LittleSearchEngine();
+			engine.makeIndex(args[2], args[3]);
+		} else {
+			engine = IndexMemoryBenchmark.syntheticCorpus();
+		}
+		ArrayList<String> terms = new ArrayList<String>(engine.keywordsIndex.keySet());
+		Collections.sort(terms, new Comparator<String>() {
+			public int compare(String t1, String t2) {
+				return Integer.compare(engine.keywordsIndex.get(t2).size(),
+						engine.keywordsIndex.get(t1).size());
+			}
+		});
+		List<String> common = terms.subList(0, Math.min(COMMON_TERMS, terms.size()));
+
+		SearchServer server = new SearchServer(engine, 0, connections);
+		server.start();
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		String base = "http://localhost:" + server.port() + "/";
+		try {
+			System.out.printf("%d processors, warm-up with %d connections%n",
+					Runtime.getRuntime().availableProcessors(), Math.min(connections, 100));
+			run(client, base, common, Math.min(connections, 100), Math.min(requests, 20000));
+			System.out.printf("%d connections%n", connections);
+			run(client, base, common, connections, requests);
+		} finally {
+			server.stop(0);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Sends requests, keeping the given number in flight, and prints the results.
+	 */
+	private static void run(HttpClient client, String base, List<String> terms, int connections,
+			int requests)
+	throws InterruptedException {
+		final Semaphore inFlight = new Semaphore(connections);
+		final long[] latencies = new long[requests];
+		final AtomicInteger failures = new AtomicInteger();
+		int peak = 0;
+		final CountDownLatch done = new CountDownLatch(requests);
+		Random random = new Random(11);
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			inFlight.acquire();
+			peak = Math.max(peak, connections - inFlight.availablePermits());
+			final int request = i;
+			final long sent = System.nanoTime();
+			HttpRequest r = HttpRequest.newBuilder(URI.create(base + query(terms, random)))
+					.timeout(Duration.ofSeconds(60)).build();
+			client.sendAsync(r, HttpResponse.BodyHandlers.ofString()).whenComplete(
+					new BiConsumer<HttpResponse<String>,Throwable>() {
+						public void accept(HttpResponse<String> response, Throwable error) {
+							latencies[request] = System.nanoTime() - sent;
+							if (error != null || response.statusCode() != 200) {
+								failures.incrementAndGet();
+							}
+							inFlight.release();
+							done.countDown();
+						}
+					});
+		}
+		done.await();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Arrays.sort(latencies);
+		System.out.printf("  %d requests in %.1f s: %.0f requests/s, %d failed, %d in flight at most%n",
+				requests, seconds, requests / seconds, failures.get(), peak);
+		System.out.printf("  latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+				latencies[requests / 2] / 1e6, latencies[requests * 99 / 100] / 1e6,
+				latencies[requests - 1] / 1e6);
+	}
+
+	private static String query(List<String> terms, Random random) {
+		String kw1 = terms.get(random.nextInt(terms.size()));
+		String kw2 = terms.get(random.nextInt(terms.size()));
+		String endpoint = ENDPOINTS[random.nextInt(ENDPOINTS.length)];
+		if (endpoint.equals("top5search")) {
+			return endpoint + "?kw1=" + kw1 + "&kw2=" + kw2;
+		}
+		return endpoint + "?q=" + kw1 + "," + kw2 + "&k=10";
+	}
+}
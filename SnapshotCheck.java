@@ -0,0 +1,185 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Checks that snapshots are isolated from the changes made to their engine after they
+ * were taken. A hash of each list of a snapshot, and the names of its documents, are
+ * kept when it is taken, and random changes follow: documents taken out, merged again with new
+ * frequencies, merged for the first time, handed over from a ConcurrentKeywordIndex,
+ * and the forward index turned on or off. Each snapshot must still match its hashes
+ * after the next few changes, and the latest snapshot must match the engine.
+ * Meanwhile a reader thread searches the latest snapshot without locks, and checks
+ * that its lists are in order and that top5search agrees with them. Runs on the
+ * synthetic corpus of IndexMemoryBenchmark, or on the documents listed in a docs file.
+ *
+ * Usage: java search.SnapshotCheck [docsFile noiseWordsFile]
+ *
+ */
+public class SnapshotCheck {
+
+	private static final int CHANGES = 100;
+
+	private static final int COMMON_TERMS = 100;
+
+	/**
+	 * Number of changes a snapshot is kept for before it is checked against its hashes.
+	 */
+	private static final int SNAPSHOTS = 5;
+
+	public static void main(String[] args)
+	throws FileNotFoundException, InterruptedException {
+		final LittleSearchEngine engine = CheckCorpus.engine(args);
+		ArrayList<String> terms = CheckCorpus.termsByListLength(engine);
+		final List<String> common = terms.subList(0, Math.min(COMMON_TERMS, terms.size()));
+		ArrayList<String> docs = CheckCorpus.documents(engine);
+
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicInteger searches = new AtomicInteger();
+		Thread reader = new Thread() {
+			public void run() {
+				try {
+					Random random = new Random(231);
+					while (!done.get()) {
+						search(engine.snapshot(), common, random);
+						searches.incrementAndGet();
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+		reader.start();
+
+		Random random = new Random(23);
+		ArrayDeque<LittleSearchEngine> snapshots = new ArrayDeque<LittleSearchEngine>();
+		ArrayDeque<HashMap<String,Integer>> hashes = new ArrayDeque<HashMap<String,Integer>>();
+		ArrayDeque<ArrayList<String>> documents = new ArrayDeque<ArrayList<String>>();
+		try {
+			for (int c = 0; c < CHANGES && failure.get() == null; c++) {
+				LittleSearchEngine s = engine.snapshot();
+				snapshots.add(s);
+				hashes.add(hashes(s));
+				documents.add(CheckCorpus.documents(s));
+				change(engine, docs, common, random, c);
+				if (snapshots.size() > SNAPSHOTS) {
+					check(snapshots.remove(), hashes.remove(), documents.remove());
+				}
+			}
+			while (!snapshots.isEmpty()) {
+				check(snapshots.remove(), hashes.remove(), documents.remove());
+			}
+			LittleSearchEngine latest = engine.snapshot();
+			CheckCorpus.checkSameIndex("Latest snapshot", engine.keywordsIndex, latest.keywordsIndex, true);
+			try {
+				latest.removeDocument(docs.get(0));
+				throw new IllegalStateException("A snapshot was changed");
+			} catch (IllegalStateException e) {
+				if (!e.getMessage().equals("a snapshot is read-only")) {
+					throw e;
+				}
+			}
+		} finally {
+			done.set(true);
+			reader.join();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("Reader failed", failure.get());
+		}
+		System.out.printf("%d snapshots are unchanged by the %d changes after them, "
+				+ "and %d searches of the latest agree with its lists%n", CHANGES, SNAPSHOTS, searches.get());
+	}
+
+	/**
+	 * Makes one random change to the index.
+	 */
+	private static void change(LittleSearchEngine engine, ArrayList<String> docs, List<String> terms,
+			Random random, int c) {
+		String doc = docs.get(random.nextInt(docs.size()));
+		switch (random.nextInt(10)) {
+		case 0:
+			engine.removeDocument(doc);
+			break;
+		case 1:
+			ConcurrentKeywordIndex index = new ConcurrentKeywordIndex();
+			index.mergeKeyWords(CheckCorpus.randomKeywords("handed" + c, terms, 20, random));
+			index.mergeKeyWords(CheckCorpus.randomKeywords(doc, terms, 20, random));
+			engine.mergeKeyWords(index);
+			break;
+		case 2:
+			engine.setForwardIndex(random.nextBoolean());
+			break;
+		case 3:
+		case 4:
+			engine.mergeKeyWords(CheckCorpus.randomKeywords("added" + c, terms, 20, random));
+			break;
+		default:
+			// merging a document that is indexed replaces its keywords
+			engine.mergeKeyWords(CheckCorpus.randomKeywords(doc, terms, 20, random));
+		}
+	}
+
+	/**
+	 * Hashes the documents and frequencies of each list of a snapshot, in order.
+	 */
+	private static HashMap<String,Integer> hashes(LittleSearchEngine snapshot) {
+		HashMap<String,Integer> hashes = new HashMap<String,Integer>();
+		for (Map.Entry<String,ArrayList<Occurrence>> e : snapshot.keywordsIndex.entrySet()) {
+			int hash = 0;
+			for (Occurrence occ : e.getValue()) {
+				hash = (hash * 31 + occ.document.hashCode()) * 31 + occ.frequency;
+			}
+			hashes.put(e.getKey(), hash);
+		}
+		return hashes;
+	}
+
+	/**
+	 * Throws IllegalStateException if a snapshot no longer matches the hashes and the
+	 * documents kept when it was taken.
+	 */
+	private static void check(LittleSearchEngine snapshot, HashMap<String,Integer> hashes,
+			ArrayList<String> documents) {
+		HashMap<String,Integer> now = hashes(snapshot);
+		if (!now.keySet().equals(hashes.keySet())) {
+			throw new IllegalStateException("Keywords of a snapshot changed");
+		}
+		for (Map.Entry<String,Integer> e : hashes.entrySet()) {
+			if (!e.getValue().equals(now.get(e.getKey()))) {
+				throw new IllegalStateException("List of " + e.getKey() + " in a snapshot changed to "
+						+ snapshot.keywordsIndex.get(e.getKey()));
+			}
+		}
+		if (!documents.equals(CheckCorpus.documents(snapshot))) {
+			throw new IllegalStateException("Documents of a snapshot changed");
+		}
+	}
+
+	/**
+	 * Searches a snapshot for a random pair of common keywords, and throws
+	 * IllegalStateException if their lists are out of order or top5search does not
+	 * agree with merging them.
+	 */
+	private static void search(LittleSearchEngine snapshot, List<String> terms, Random random) {
+		String kw1 = terms.get(random.nextInt(terms.size()));
+		String kw2 = terms.get(random.nextInt(terms.size()));
+		ArrayList<Occurrence> l1 = snapshot.keywordsIndex.get(kw1);
+		ArrayList<Occurrence> l2 = snapshot.keywordsIndex.get(kw2);
+		for (ArrayList<Occurrence> occs : Arrays.asList(l1, l2)) {
+			for (int i = 1; occs != null && i < occs.size(); i++) {
+				if (occs.get(i - 1).frequency < occs.get(i).frequency) {
+					throw new IllegalStateException("List out of order: " + occs);
+				}
+			}
+		}
+		ArrayList<String> expected = LittleSearchEngine.top5merge(l1, l2);
+		ArrayList<String> result = snapshot.top5search(kw1, kw2);
+		if (expected == null ? result != null : !expected.equals(result)) {
+			throw new IllegalStateException("Result of " + kw1 + " or " + kw2 + " is " + result
+					+ ", not " + expected);
+		}
+	}
+}
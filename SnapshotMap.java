@@ -0,0 +1,168 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class is a read-only hash table that can be copied with some of its entries
+ * changed in time proportional to the number of changes, rather than to the size of
+ * the table, for the snapshots of a LittleSearchEngine. The entries are split by hash
+ * into buckets, each a HashMap of about BUCKET_SIZE entries. A changed copy shares the
+ * buckets in which no entry has changed with the table it was copied from, and only
+ * copies the others, and the array of buckets, which holds one reference for every
+ * BUCKET_SIZE entries or so.
+ *
+ * A table is never changed once made, so any number of threads can read it without
+ * locks. Keys must not be null, and null values are not stored.
+ *
+ */
+class SnapshotMap<K,V> extends AbstractMap<K,V> {
+
+	/**
+	 * Average number of entries in a bucket that the number of buckets is chosen for.
+	 */
+	static final int BUCKET_SIZE = 16;
+
+	/**
+	 * Smallest number of buckets.
+	 */
+	private static final int MIN_BUCKETS = 16;
+
+	/**
+	 * Buckets, a power of 2 of them, each null if it has no entries.
+	 */
+	private final HashMap<K,V>[] buckets;
+
+	/**
+	 * Number of entries.
+	 */
+	private final int size;
+
+	/**
+	 * Initializes a table with the entries of a map.
+	 *
+	 * @param map Map to copy
+	 */
+	SnapshotMap(Map<? extends K,? extends V> map) {
+		int n = MIN_BUCKETS;
+		while (n * BUCKET_SIZE < map.size()) {
+			n *= 2;
+		}
+		buckets = newBuckets(n);
+		for (Map.Entry<? extends K,? extends V> e : map.entrySet()) {
+			int b = bucket(e.getKey(), n);
+			if (buckets[b] == null) {
+				buckets[b] = new HashMap<K,V>(BUCKET_SIZE * 2);
+			}
+			buckets[b].put(e.getKey(), e.getValue());
+		}
+		size = map.size();
+	}
+
+	private SnapshotMap(HashMap<K,V>[] buckets, int size) {
+		this.buckets = buckets;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K,V> HashMap<K,V>[] newBuckets(int n) {
+		return (HashMap<K,V>[])new HashMap<?,?>[n];
+	}
+
+	/**
+	 * Returns the bucket of a key. The high bits of the spread hash pick the bucket, so
+	 * the low bits, which pick the slot in the bucket's own table, still differ between
+	 * the keys of one bucket.
+	 */
+	private static int bucket(Object key, int buckets) {
+		return (key.hashCode() * 0x9e3779b9) >>> (32 - Integer.numberOfTrailingZeros(buckets));
+	}
+
+	/**
+	 * Returns a copy of this table with some entries changed. The buckets of unchanged
+	 * entries are shared with this table. If the table has grown or shrunk too far for
+	 * its number of buckets, the copy is split into a new number of buckets instead,
+	 * which takes time in proportion to its size, but only happens once the size has
+	 * changed by a factor of 2 to 8 since the buckets were chosen.
+	 *
+	 * @param changes New values of the changed keys, with null for keys to take out
+	 * @return Changed copy of this table
+	 */
+	SnapshotMap<K,V> with(Map<? extends K,? extends V> changes) {
+		HashMap<K,V>[] copy = buckets.clone();
+		boolean[] copied = new boolean[copy.length];
+		int n = size;
+		for (Map.Entry<? extends K,? extends V> e : changes.entrySet()) {
+			int b = bucket(e.getKey(), copy.length);
+			if (!copied[b]) {
+				copy[b] = copy[b] == null ? new HashMap<K,V>(BUCKET_SIZE * 2) : new HashMap<K,V>(copy[b]);
+				copied[b] = true;
+			}
+			if (e.getValue() == null) {
+				if (copy[b].remove(e.getKey()) != null) {
+					n--;
+				}
+			} else if (copy[b].put(e.getKey(), e.getValue()) == null) {
+				n++;
+			}
+		}
+		SnapshotMap<K,V> next = new SnapshotMap<K,V>(copy, n);
+		if (n > copy.length * BUCKET_SIZE * 4
+				|| (copy.length > MIN_BUCKETS && n < copy.length * BUCKET_SIZE / 4)) {
+			return new SnapshotMap<K,V>(next);
+		}
+		return next;
+	}
+
+	public V get(Object key) {
+		HashMap<K,V> b = buckets[bucket(key, buckets.length)];
+		return b == null ? null : b.get(key);
+	}
+
+	public boolean containsKey(Object key) {
+		HashMap<K,V> b = buckets[bucket(key, buckets.length)];
+		return b != null && b.containsKey(key);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Set<Map.Entry<K,V>> entrySet() {
+		return new AbstractSet<Map.Entry<K,V>>() {
+			public int size() {
+				return size;
+			}
+
+			public Iterator<Map.Entry<K,V>> iterator() {
+				return new Iterator<Map.Entry<K,V>>() {
+					private int next;
+					private Iterator<Map.Entry<K,V>> entries = Collections.<Map.Entry<K,V>>emptyIterator();
+
+					public boolean hasNext() {
+						while (!entries.hasNext()) {
+							if (next == buckets.length) {
+								return false;
+							}
+							HashMap<K,V> b = buckets[next++];
+							if (b != null) {
+								entries = b.entrySet().iterator();
+							}
+						}
+						return true;
+					}
+
+					public Map.Entry<K,V> next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						return new AbstractMap.SimpleImmutableEntry<K,V>(entries.next());
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,352 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class holds the keywords (terms) of an index in sorted order, for queries that
+ * need the terms in a range, such as all terms that start with a prefix. Terms are
+ * front coded in blocks of BLOCK_SIZE: the first term of each block is stored whole,
+ * and each of the other terms as the number of leading characters it shares with the
+ * term before it, followed by the rest of its characters. All blocks are held in one
+ * char array, and the first terms of the blocks are binary searched to find where a
+ * term would be.
+ *
+ */
+class SortedTermDictionary {
+
+	/**
+	 * Number of terms in a block.
+	 */
+	static final int BLOCK_SIZE = 16;
+
+	/**
+	 * Front coded terms. Each term is its shared prefix length, its suffix length, and
+	 * the characters of its suffix.
+	 */
+	private final char[] data;
+
+	/**
+	 * Index in data of the start of each block.
+	 */
+	private final int[] blockStarts;
+
+	/**
+	 * First term of each block.
+	 */
+	private final String[] blockFirsts;
+
+	/**
+	 * Number of terms in the dictionary.
+	 */
+	private final int size;
+
+	/**
+	 * Builds the sorted dictionary of the given terms.
+	 *
+	 * @param terms Distinct terms, in any order
+	 */
+	SortedTermDictionary(Collection<String> terms) {
+		String[] sorted = terms.toArray(new String[0]);
+		Arrays.sort(sorted);
+		size = sorted.length;
+		int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		blockStarts = new int[blocks];
+		blockFirsts = new String[blocks];
+
+		char[] buf = new char[Math.max(size * 8, 16)];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			String term = sorted[i];
+			int shared = 0;
+			if (i % BLOCK_SIZE == 0) {
+				blockStarts[i / BLOCK_SIZE] = n;
+				blockFirsts[i / BLOCK_SIZE] = term;
+			} else {
+				shared = sharedPrefix(sorted[i - 1], term);
+			}
+			int suffix = term.length() - shared;
+			if (n + suffix + 2 > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, n + suffix + 2));
+			}
+			buf[n++] = (char)shared;
+			buf[n++] = (char)suffix;
+			term.getChars(shared, term.length(), buf, n);
+			n += suffix;
+		}
+		data = Arrays.copyOf(buf, n);
+	}
+
+	/**
+	 * Number of terms in the dictionary.
+	 *
+	 * @return Number of terms
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the terms that start with the given prefix, in sorted order.
+	 *
+	 * @param prefix Prefix of terms, which may be empty
+	 * @return Terms that start with the prefix
+	 */
+	ArrayList<String> withPrefix(String prefix) {
+		ArrayList<String> result = new ArrayList<String>();
+		Cursor c = cursor();
+		if (!c.seek(prefix)) {
+			return result;
+		}
+		while (c.startsWith(prefix)) {
+			result.add(c.term());
+			if (!c.next()) {
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the terms accepted by a Levenshtein automaton, in sorted order. The terms
+	 * are walked in order, and the automaton states of the characters a term shares with
+	 * the term before it are kept, so only its remaining characters are read. When the
+	 * automaton can no longer accept after some leading characters, the cursor seeks
+	 * past every term that starts with them.
+	 *
+	 * @param automaton Automaton of the accepted terms
+	 * @return Accepted terms
+	 */
+	ArrayList<String> accepted(LevenshteinAutomaton automaton) {
+		ArrayList<String> result = new ArrayList<String>();
+		int[][] states = new int[32][];
+		states[0] = automaton.start();
+		// number of leading characters of the last term walked whose states are in states
+		int valid = 0;
+		Cursor c = cursor();
+		boolean more = c.next();
+		while (more) {
+			char[] chars = c.chars();
+			int length = c.length();
+			if (length >= states.length) {
+				states = Arrays.copyOf(states, Math.max(states.length * 2, length + 1));
+			}
+			int d = Math.min(c.shared(), valid);
+			boolean dead = false;
+			while (d < length) {
+				if (states[d + 1] == null) {
+					states[d + 1] = new int[automaton.stateLength()];
+				}
+				automaton.step(states[d], chars[d], states[d + 1]);
+				d++;
+				if (!automaton.canMatch(states[d])) {
+					dead = true;
+					break;
+				}
+			}
+			if (dead) {
+				// skip all terms that start with the first d characters of this one
+				valid = d - 1;
+				String successor = new String(chars, 0, d - 1) + (char)(chars[d - 1] + 1);
+				more = c.seek(successor);
+			} else {
+				valid = length;
+				if (automaton.isMatch(states[length])) {
+					result.add(c.term());
+				}
+				more = c.next();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Makes a cursor positioned before the first term.
+	 *
+	 * @return New cursor
+	 */
+	Cursor cursor() {
+		return new Cursor();
+	}
+
+	private static int sharedPrefix(String s1, String s2) {
+		int n = Math.min(s1.length(), s2.length());
+		int i = 0;
+		while (i < n && s1.charAt(i) == s2.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Walks the terms in sorted order, decoding each into a reusable char buffer.
+	 * A cursor starts before the first term, and can be moved forward to the first term
+	 * not less than a given string with seek, which skips whole blocks.
+	 */
+	class Cursor {
+
+		/**
+		 * Characters of the current term.
+		 */
+		private char[] chars = new char[32];
+
+		/**
+		 * Length of the current term.
+		 */
+		private int length;
+
+		/**
+		 * Number of leading characters the current term shares with the one before it.
+		 */
+		private int shared;
+
+		/**
+		 * Index of the next term to decode.
+		 */
+		private int next;
+
+		/**
+		 * Position in data of the next term to decode.
+		 */
+		private int pos;
+
+		/**
+		 * Moves to the next term.
+		 *
+		 * @return True if there is a next term, false if the cursor is past the last term
+		 */
+		boolean next() {
+			if (next == size) {
+				return false;
+			}
+			int prefix = data[pos];
+			int suffix = data[pos + 1];
+			if (next % BLOCK_SIZE == 0) {
+				// the first term of a block is stored whole, so compare it with the term before
+				shared = 0;
+				int n = Math.min(length, suffix);
+				while (shared < n && chars[shared] == data[pos + 2 + shared]) {
+					shared++;
+				}
+			} else {
+				shared = prefix;
+			}
+			length = prefix + suffix;
+			if (length > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length));
+			}
+			System.arraycopy(data, pos + 2, chars, prefix, suffix);
+			pos += 2 + suffix;
+			next++;
+			return true;
+		}
+
+		/**
+		 * Moves the cursor forward to the first term that is not less than target. If the
+		 * cursor is already on such a term, it stays there; it never moves backwards.
+		 * Terms in blocks before the target's block are skipped without being decoded.
+		 *
+		 * @param target String to seek
+		 * @return True if the cursor is on a term, false if it is past the last term
+		 */
+		boolean seek(String target) {
+			if (next > 0 && compareTo(target) >= 0) {
+				return true;
+			}
+			char[] before = Arrays.copyOf(chars, length);
+
+			// last block whose first term is not greater than target
+			int lo = 0, hi = blockFirsts.length - 1, block = 0;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (blockFirsts[mid].compareTo(target) <= 0) {
+					block = mid;
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			if (block * BLOCK_SIZE > next) {
+				next = block * BLOCK_SIZE;
+				pos = blockStarts[block];
+			}
+			do {
+				if (!next()) {
+					return false;
+				}
+			} while (compareTo(target) < 0);
+
+			shared = 0;
+			int n = Math.min(before.length, length);
+			while (shared < n && before[shared] == chars[shared]) {
+				shared++;
+			}
+			return true;
+		}
+
+		/**
+		 * Number of leading characters the current term shares with the term the cursor
+		 * was on before the last call of next or seek.
+		 *
+		 * @return Shared prefix length
+		 */
+		int shared() {
+			return shared;
+		}
+
+		/**
+		 * Characters of the current term, starting at index 0. The array is reused by
+		 * the cursor.
+		 *
+		 * @return Characters of the current term
+		 */
+		char[] chars() {
+			return chars;
+		}
+
+		/**
+		 * Length of the current term.
+		 *
+		 * @return Number of characters in the current term
+		 */
+		int length() {
+			return length;
+		}
+
+		/**
+		 * The current term.
+		 *
+		 * @return Current term
+		 */
+		String term() {
+			return new String(chars, 0, length);
+		}
+
+		/**
+		 * Tells whether the current term starts with the given prefix.
+		 *
+		 * @param prefix Prefix
+		 * @return True if the current term starts with prefix
+		 */
+		boolean startsWith(String prefix) {
+			if (prefix.length() > length) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length(); i++) {
+				if (chars[i] != prefix.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int compareTo(String s) {
+			int n = Math.min(length, s.length());
+			for (int i = 0; i < n; i++) {
+				if (chars[i] != s.charAt(i)) {
+					return chars[i] - s.charAt(i);
+				}
+			}
+			return length - s.length();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks SortedTermDictionary against a sorted array of its terms. Dictionaries of
+ * random terms over a small alphabet, so that terms share long prefixes, are built with
+ * sizes around the block size and larger, and the keywords of an engine are checked too.
+ * For each dictionary, walking a cursor with next must give every term in order with
+ * its shared prefix length, seeking a fresh cursor must land on the first term not less
+ * than the target, a run of seeks to increasing targets on one cursor must land where
+ * fresh cursors do, and withPrefix must give the terms that start with the prefix.
+ *
+ * Usage: java search.SortedTermDictionaryCheck [docsFile noiseWordsFile]
+ *
+ */
+public class SortedTermDictionaryCheck {
+
+	private static final int[] SIZES = {0, 1, 2, 15, 16, 17, 31, 32, 33, 1000, 20000};
+
+	private static final int TARGETS = 2000;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		Random random = new Random(19);
+		for (int size : SIZES) {
+			HashSet<String> terms = new HashSet<String>();
+			while (terms.size() < size) {
+				terms.add(randomString(random, 1 + random.nextInt(8)));
+			}
+			check(terms, random);
+		}
+		LittleSearchEngine engine;
+		if (args.length > 1) {
+			engine = new LittleSearchEngine();
+			engine.makeIndex(args[0], args[1]);
+		} else {
+			engine = IndexMemoryBenchmark.syntheticCorpus();
+		}
+		check(engine.keywordsIndex.keySet(), random);
+		System.out.printf("%d dictionaries of random terms, and %d keywords of the engine, agree "
+				+ "with a sorted array%n", SIZES.length, engine.keywordsIndex.size());
+	}
+
+	/**
+	 * Checks a dictionary of the given terms, and throws IllegalStateException if it
+	 * differs from the sorted array of the terms.
+	 */
+	private static void check(Collection<String> terms, Random random) {
+		String[] sorted = terms.toArray(new String[0]);
+		Arrays.sort(sorted);
+		SortedTermDictionary dictionary = new SortedTermDictionary(terms);
+		if (dictionary.size() != sorted.length) {
+			throw new IllegalStateException("Size " + dictionary.size() + " of " + sorted.length);
+		}
+
+		SortedTermDictionary.Cursor c = dictionary.cursor();
+		for (int i = 0; i < sorted.length; i++) {
+			if (!c.next() || !c.term().equals(sorted[i])
+					|| c.shared() != (i == 0 ? 0 : sharedPrefix(sorted[i - 1], sorted[i]))) {
+				throw new IllegalStateException("Term " + i + " is not " + sorted[i]);
+			}
+		}
+		if (c.next()) {
+			throw new IllegalStateException("Term after the last: " + c.term());
+		}
+
+		String[] targets = new String[TARGETS];
+		for (int t = 0; t < TARGETS; t++) {
+			targets[t] = target(sorted, random);
+			checkSeek(dictionary.cursor(), sorted, targets[t], null);
+			String prefix = targets[t];
+			ArrayList<String> expected = new ArrayList<String>();
+			for (int i = ceiling(sorted, prefix); i < sorted.length && sorted[i].startsWith(prefix); i++) {
+				expected.add(sorted[i]);
+			}
+			if (!expected.equals(dictionary.withPrefix(prefix))) {
+				throw new IllegalStateException("Terms with prefix " + prefix + " differ");
+			}
+		}
+		Arrays.sort(targets);
+		c = dictionary.cursor();
+		String before = null;
+		for (String target : targets) {
+			if (!checkSeek(c, sorted, target, before)) {
+				break;
+			}
+			before = c.term();
+		}
+	}
+
+	/**
+	 * Seeks a cursor, and checks that it lands on the first term not less than the
+	 * target, with the length of the prefix it shares with the term it was on.
+	 *
+	 * @return True if the cursor is on a term
+	 */
+	private static boolean checkSeek(SortedTermDictionary.Cursor c, String[] sorted, String target,
+			String before) {
+		boolean found = c.seek(target);
+		int i = ceiling(sorted, target);
+		if (found != (i < sorted.length)) {
+			throw new IllegalStateException("Seek of " + target + " found " + found);
+		}
+		if (found && (!c.term().equals(sorted[i])
+				|| (!c.term().equals(before) && c.shared() != sharedPrefix(before == null ? "" : before, sorted[i])))) {
+			throw new IllegalStateException("Seek of " + target + " is on " + c.term() + ", not " + sorted[i]);
+		}
+		return found;
+	}
+
+	/**
+	 * Picks a target to seek: a term, a term with its last character changed or taken
+	 * off or one added, a random string, or the empty string.
+	 */
+	private static String target(String[] sorted, Random random) {
+		if (sorted.length == 0 || random.nextInt(8) == 0) {
+			return random.nextInt(4) == 0 ? "" : randomString(random, 1 + random.nextInt(8));
+		}
+		String term = sorted[random.nextInt(sorted.length)];
+		switch (random.nextInt(4)) {
+		case 0:
+			return term;
+		case 1:
+			return term.substring(0, term.length() - 1) + (char)('a' + random.nextInt(5));
+		case 2:
+			return term.substring(0, term.length() - 1);
+		default:
+			return term + (char)('a' + random.nextInt(5));
+		}
+	}
+
+	/**
+	 * Index of the first term not less than s, or the number of terms if there is none.
+	 */
+	private static int ceiling(String[] sorted, String s) {
+		int i = Arrays.binarySearch(sorted, s);
+		return i < 0 ? -i - 1 : i;
+	}
+
+	private static String randomString(Random random, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char)('a' + random.nextInt(4));
+		}
+		return new String(chars);
+	}
+
+	private static int sharedPrefix(String s1, String s2) {
+		int n = Math.min(s1.length(), s2.length());
+		int i = 0;
+		while (i < n && s1.charAt(i) == s2.charAt(i)) {
+			i++;
+		}
+		return i;
+	}
+}
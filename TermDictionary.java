@@ -0,0 +1,131 @@
+package search;
+
+import java.util.*;
+
+/**
+ * This class numbers the keywords (terms) of an index. Each term is given an integer id,
+ * in order of addition starting at 0, so that postings can be held in arrays indexed
+ * by term id. Terms are kept in an open addressing table with their ids in a parallel
+ * int array, so looking up a term does not box its id.
+ *
+ */
+class TermDictionary {
+
+	/**
+	 * Open addressing table of terms.
+	 */
+	private String[] table;
+
+	/**
+	 * Id of the term in the same slot of the table.
+	 */
+	private int[] tableIds;
+
+	/**
+	 * Terms, indexed by term id.
+	 */
+	private String[] terms;
+
+	/**
+	 * Number of terms in the dictionary.
+	 */
+	private int size;
+
+	/**
+	 * Initializes an empty dictionary with room for the given number of terms.
+	 *
+	 * @param expected Expected number of terms
+	 */
+	TermDictionary(int expected) {
+		int capacity = 16;
+		while (capacity < expected * 2) {
+			capacity *= 2;
+		}
+		table = new String[capacity];
+		tableIds = new int[capacity];
+		terms = new String[Math.max(expected, 8)];
+	}
+
+	/**
+	 * Adds a term to the dictionary, if it is not in it already.
+	 *
+	 * @param term Term
+	 * @return Id of the term
+	 */
+	int add(String term) {
+		int slot = slot(term);
+		if (table[slot] != null) {
+			return tableIds[slot];
+		}
+		if (size == terms.length) {
+			terms = Arrays.copyOf(terms, size * 2);
+		}
+		terms[size] = term;
+		table[slot] = term;
+		tableIds[slot] = size;
+		if (++size * 2 > table.length) {
+			rehash();
+		}
+		return size - 1;
+	}
+
+	/**
+	 * Returns the id of a term.
+	 *
+	 * @param term Term
+	 * @return Id of the term, or -1 if it is not in the dictionary
+	 */
+	int id(String term) {
+		int slot = slot(term);
+		return table[slot] == null ? -1 : tableIds[slot];
+	}
+
+	/**
+	 * Returns the term with the given id.
+	 *
+	 * @param id Term id
+	 * @return Term
+	 */
+	String term(int id) {
+		return terms[id];
+	}
+
+	/**
+	 * Number of terms in the dictionary. Term ids go from 0 to size-1.
+	 *
+	 * @return Number of terms
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Finds the slot that holds the given term, or the empty slot where it would go.
+	 */
+	private int slot(String term) {
+		int mask = table.length - 1;
+		int h = term.hashCode();
+		int slot = (h ^ (h >>> 16)) & mask;
+		while (table[slot] != null && !table[slot].equals(term)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Doubles the size of the table.
+	 */
+	private void rehash() {
+		String[] oldTable = table;
+		int[] oldIds = tableIds;
+		table = new String[oldTable.length * 2];
+		tableIds = new int[oldTable.length * 2];
+		for (int i = 0; i < oldTable.length; i++) {
+			if (oldTable[i] != null) {
+				int slot = slot(oldTable[i]);
+				table[slot] = oldTable[i];
+				tableIds[slot] = oldIds[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks thresholdSearch against an exhaustive merge that sums the frequencies of the
+ * query keywords in every document, on random queries of 1 to 4 keywords, most of them
+ * common. The queries are run without a forward index, and again with one, since the
+ * two find a document's frequencies in different ways. When documents tie with the
+ * k-th score, thresholdSearch may return any of them, so each result is checked to
+ * hold distinct documents whose scores are the k best scores, in order. Runs on the
+ * synthetic corpus of IndexMemoryBenchmark, or on the documents listed in a docs file.
+ *
+ * Usage: java search.ThresholdSearchCheck [docsFile noiseWordsFile]
+ *
+ */
+public class ThresholdSearchCheck {
+
+	private static final int QUERIES = 2000;
+
+	private static final int COMMON_TERMS = 500;
+
+	private static final int[] KS = {1, 5, 10, 100};
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		LittleSearchEngine engine = CheckCorpus.engine(args);
+		ArrayList<String> terms = CheckCorpus.termsByListLength(engine);
+		Random random = new Random(13);
+		ArrayList<List<String>> queries = new ArrayList<List<String>>();
+		for (int q = 0; q < QUERIES; q++) {
+			ArrayList<String> query = CheckCorpus.randomQuery(terms, COMMON_TERMS, random);
+			if (random.nextInt(10) == 0) {
+				query.add("notakeyword");
+			}
+			queries.add(query);
+		}
+
+		for (boolean forward : new boolean[] {false, true}) {
+			engine.setForwardIndex(forward);
+			for (int q = 0; q < QUERIES; q++) {
+				check(engine, queries.get(q), KS[q % KS.length]);
+			}
+		}
+		System.out.printf("%d queries of 1-4 keywords agree with the exhaustive merge, "
+				+ "with and without a forward index%n", QUERIES);
+	}
+
+	/**
+	 * Runs one query, and throws IllegalStateException if its result is not the k best
+	 * documents by summed frequency.
+	 */
+	private static void check(LittleSearchEngine engine, List<String> query, int k) {
+		CheckCorpus.checkBest(query, k, exhaustive(engine, query), engine.thresholdSearch(query, k));
+	}
+
+	/**
+	 * Sums the frequencies of the distinct keywords of a query in every document that
+	 * holds any of them, reading every occurrence of every list.
+	 */
+	private static HashMap<String,Integer> exhaustive(LittleSearchEngine engine, List<String> keywords) {
+		HashMap<String,Integer> scores = new HashMap<String,Integer>();
+		for (String keyword : new HashSet<String>(keywords)) {
+			ArrayList<Occurrence> occs = engine.keywordsIndex.get(keyword);
+			if (occs == null) {
+				continue;
+			}
+			for (Occurrence occ : occs) {
+				Integer score = scores.get(occ.document);
+				scores.put(occ.document, (score == null ? 0 : score) + occ.frequency);
+			}
+		}
+		return scores;
+	}
+}
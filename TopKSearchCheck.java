@@ -0,0 +1,66 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Checks topKSearch against scoring every document of the query keywords by the highest
+ * frequency of any of them, on random queries of 1 to 4 keywords, most of them common.
+ * Documents that tie may come in any order here, so each result is checked to hold
+ * distinct documents whose scores are the k best scores, in order. For two keywords
+ * and k of 5, the result must also be exactly that of top5search. Runs on the synthetic
+ * corpus of IndexMemoryBenchmark, or on the documents listed in a docs file.
+ *
+ * Usage: java search.TopKSearchCheck [docsFile noiseWordsFile]
+ *
+ */
+public class TopKSearchCheck {
+
+	private static final int QUERIES = 2000;
+
+	private static final int COMMON_TERMS = 500;
+
+	private static final int[] KS = {1, 5, 10, 100};
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		LittleSearchEngine engine = CheckCorpus.engine(args);
+		ArrayList<String> terms = CheckCorpus.termsByListLength(engine);
+		Random random = new Random(12);
+		for (int q = 0; q < QUERIES; q++) {
+			ArrayList<String> query = CheckCorpus.randomQuery(terms, COMMON_TERMS, random);
+			if (random.nextInt(10) == 0) {
+				query.add("notakeyword");
+			}
+			check(engine, query, KS[q % KS.length]);
+			if (query.size() == 2) {
+				ArrayList<String> top5 = engine.top5search(query.get(0), query.get(1));
+				ArrayList<String> result = engine.topKSearch(query, 5);
+				if (top5 == null ? result != null : !top5.equals(result)) {
+					throw new IllegalStateException("Top 5 of " + query + " is " + result
+							+ ", but top5search gives " + top5);
+				}
+			}
+		}
+		System.out.printf("%d queries of 1-4 keywords agree with scoring every document%n", QUERIES);
+	}
+
+	/**
+	 * Runs one query, and throws IllegalStateException if its result is not the k best
+	 * documents by highest frequency.
+	 */
+	private static void check(LittleSearchEngine engine, List<String> query, int k) {
+		HashMap<String,Integer> scores = new HashMap<String,Integer>();
+		for (String keyword : query) {
+			ArrayList<Occurrence> occs = engine.keywordsIndex.get(keyword);
+			if (occs == null) {
+				continue;
+			}
+			for (Occurrence occ : occs) {
+				Integer score = scores.get(occ.document);
+				scores.put(occ.document, Math.max(score == null ? 0 : score, occ.frequency));
+			}
+		}
+		CheckCorpus.checkBest(query, k, scores, engine.topKSearch(query, k));
+	}
+}
@@ -0,0 +1,146 @@
+package search;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * This class holds the postings of a keyword compressed with delta and variable-byte
+ * encoding. The postings are stored as runs of postings that have the same frequency,
+ * in descending order of frequency. Each run is written as:
+ *
+ *   frequency gap, number of postings, document id gaps
+ *
+ * where the frequency gap of the first run is its frequency, and that of every other
+ * run is the previous run's frequency minus its own. Document ids in a run are ascending,
+ * and each is written as the gap from the previous one (from 0 for the first). Every
+ * number is written in variable-byte form: 7 bits per byte, low bits first, with the
+ * high bit set on all bytes but the last.
+ *
+ * Postings are decoded sequentially by the cursor, straight from the buffer, so the
+ * same class reads postings encoded in memory and postings in a mapped index file.
+ *
+ */
+class VBytePostings implements Postings {
+
+	/**
+	 * Encoded postings, from position 0 to the limit of the buffer.
+	 */
+	private final ByteBuffer data;
+
+	/**
+	 * Number of postings.
+	 */
+	private final int size;
+
+	/**
+	 * Initializes postings over encoded data.
+	 *
+	 * @param data Encoded postings, from position 0 to the limit of the buffer
+	 * @param size Number of postings
+	 */
+	VBytePostings(ByteBuffer data, int size) {
+		this.data = data;
+		this.size = size;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long sizeInBytes() {
+		return data.limit();
+	}
+
+	/**
+	 * Encoded postings, from position 0 to the limit of the buffer.
+	 *
+	 * @return Encoded postings
+	 */
+	ByteBuffer data() {
+		return data.duplicate();
+	}
+
+	public PostingsCursor cursor() {
+		return new PostingsCursor() {
+			private int pos;
+			private int read;
+			private int runLeft;
+			private int doc;
+			private int freq;
+
+			public boolean next() {
+				if (read == size) {
+					return false;
+				}
+				if (runLeft == 0) {
+					int gap = readVInt();
+					freq = read == 0 ? gap : freq - gap;
+					runLeft = readVInt();
+					doc = 0;
+				}
+				doc += readVInt();
+				runLeft--;
+				read++;
+				return true;
+			}
+
+			public int doc() {
+				return doc;
+			}
+
+			public int frequency() {
+				return freq;
+			}
+
+			private int readVInt() {
+				int b = data.get(pos++);
+				int value = b & 0x7f;
+				for (int shift = 7; b < 0; shift += 7) {
+					b = data.get(pos++);
+					value |= (b & 0x7f) << shift;
+				}
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Codec that compresses postings into VBytePostings.
+	 */
+	static class Codec implements PostingsCodec {
+
+		public Postings encode(PostingsList list) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(list.size() * 2 + 8);
+			int i = 0;
+			int prevFreq = 0;
+			while (i < list.size()) {
+				int freq = list.frequency(i);
+				int end = i + 1;
+				while (end < list.size() && list.frequency(end) == freq) {
+					end++;
+				}
+				writeVInt(out, i == 0 ? freq : prevFreq - freq);
+				writeVInt(out, end - i);
+				int prevDoc = 0;
+				for (; i < end; i++) {
+					writeVInt(out, list.doc(i) - prevDoc);
+					prevDoc = list.doc(i);
+				}
+				prevFreq = freq;
+			}
+			return new VBytePostings(ByteBuffer.wrap(out.toByteArray()), list.size());
+		}
+
+		private static void writeVInt(ByteArrayOutputStream out, int value) {
+			while ((value & ~0x7f) != 0) {
+				out.write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+
+		public String toString() {
+			return "vbyte";
+		}
+	}
+}
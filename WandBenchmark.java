@@ -0,0 +1,126 @@
+package search;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compares wandSearch, with and without block maximums, against an exhaustive merge
+ * that scores every document of the query keywords, on random queries of 2 to 5 of the
+ * most common keywords. Runs on the synthetic corpus of IndexMemoryBenchmark, or on
+ * the documents listed in a docs file. The results of all three are checked to agree.
+ *
+ * Usage: java search.WandBenchmark [docsFile noiseWordsFile]
+ *
+ */
+public class WandBenchmark {
+
+	private static final int K = 10;
+
+	private static final int QUERIES = 2000;
+
+	private static final int COMMON_TERMS = 500;
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		final LittleSearchEngine engine;
+		if (args.length > 1) {
+			engine = new LittleSearchEngine();
+			engine.makeIndex(args[0], args[1]);
+		} else {
+			engine = IndexMemoryBenchmark.syntheticCorpus();
+		}
+		ArrayList<String> terms = new ArrayList<String>(engine.keywordsIndex.keySet());
+		Collections.sort(terms, new Comparator<String>() {
+			public int compare(String t1, String t2) {
+				return Integer.compare(engine.keywordsIndex.get(t2).size(), 
+						engine.keywordsIndex.get(t1).size());
+			}
+		});
+		Random random = new Random(7);
+		ArrayList<List<String>> queries = new ArrayList<List<String>>();
+		for (int q = 0; q < QUERIES; q++) {
+			ArrayList<String> query = new ArrayList<String>();
+			int n = 2 + random.nextInt(4);
+			for (int i = 0; i < n; i++) {
+				query.add(terms.get(random.nextInt(Math.min(COMMON_TERMS, terms.size()))));
+			}
+			queries.add(query);
+		}
+		for (List<String> query : queries) {
+			ArrayList<String> expected = exhaustive(engine, query, K);
+			if (!expected.equals(engine.wandSearch(query, K, false)) 
+					|| !expected.equals(engine.wandSearch(query, K, true))) {
+				throw new IllegalStateException("Results differ for " + query);
+			}
+		}
+
+		double exhaustive = Double.MAX_VALUE, wand = Double.MAX_VALUE, blockMax = Double.MAX_VALUE;
+		for (int r = 0; r < ROUNDS; r++) {
+			long start = System.nanoTime();
+			for (List<String> query : queries) {
+				exhaustive(engine, query, K);
+			}
+			exhaustive = Math.min(exhaustive, (double)(System.nanoTime() - start) / QUERIES);
+			start = System.nanoTime();
+			for (List<String> query : queries) {
+				engine.wandSearch(query, K, false);
+			}
+			wand = Math.min(wand, (double)(System.nanoTime() - start) / QUERIES);
+			start = System.nanoTime();
+			for (List<String> query : queries) {
+				engine.wandSearch(query, K, true);
+			}
+			blockMax = Math.min(blockMax, (double)(System.nanoTime() - start) / QUERIES);
+		}
+		System.out.printf("%d queries of 2-5 of the %d most common keywords, top %d%n", 
+				QUERIES, COMMON_TERMS, K);
+		System.out.printf("  exhaustive merge %10.1f us/query%n", exhaustive / 1000);
+		System.out.printf("  WAND             %10.1f us/query%n", wand / 1000);
+		System.out.printf("  block-max WAND   %10.1f us/query%n", blockMax / 1000);
+	}
+
+	/**
+	 * Scores every document that holds any of the keywords, by summed frequency, and
+	 * returns the k best in the same order as wandSearch.
+	 */
+	private static ArrayList<String> exhaustive(LittleSearchEngine engine, List<String> keywords, int k) {
+		ArrayList<DocOrderedPostings> lists = new ArrayList<DocOrderedPostings>();
+		for (String term : new LinkedHashSet<String>(keywords)) {
+			lists.add(engine.docOrdered(term));
+		}
+		int[] pos = new int[lists.size()];
+		PriorityQueue<LittleSearchEngine.ScoredDocument> best = 
+				new PriorityQueue<LittleSearchEngine.ScoredDocument>(k + 1, Collections.reverseOrder());
+		while (true) {
+			int doc = Integer.MAX_VALUE;
+			for (int t = 0; t < lists.size(); t++) {
+				if (pos[t] < lists.get(t).size()) {
+					doc = Math.min(doc, lists.get(t).docs[pos[t]]);
+				}
+			}
+			if (doc == Integer.MAX_VALUE) {
+				break;
+			}
+			int score = 0;
+			for (int t = 0; t < lists.size(); t++) {
+				if (pos[t] < lists.get(t).size() && lists.get(t).docs[pos[t]] == doc) {
+					score += lists.get(t).freqs[pos[t]++];
+				}
+			}
+			best.add(new LittleSearchEngine.ScoredDocument(engine.documents.name(doc), doc, score));
+			if (best.size() > k) {
+				best.poll();
+			}
+		}
+		LittleSearchEngine.ScoredDocument[] ranked = 
+				best.toArray(new LittleSearchEngine.ScoredDocument[best.size()]);
+		Arrays.sort(ranked);
+		ArrayList<String> result = new ArrayList<String>();
+		for (LittleSearchEngine.ScoredDocument doc : ranked) {
+			result.add(doc.name);
+		}
+		return result;
+	}
+}